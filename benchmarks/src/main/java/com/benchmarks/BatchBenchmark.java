@@ -0,0 +1,69 @@
+package com.benchmarks;
+
+import com.network.MnistDataset;
+import com.network.Network;
+import com.network.NetworkException;
+import com.network.NetworkModel;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Batched scoring and mini-batch training. Scores are per batch, so multiply by
+ * {@code batchSize} for images per second.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class BatchBenchmark {
+    @Param({"784-100-100-10", "784-512-512-10"})
+    public String layerSizes;
+
+    @Param({"1", "32", "256"})
+    public int batchSize;
+
+    private Network network;
+    private NetworkModel model;
+    private double[] flatInputs;
+    private double[] flatOutputs;
+    private double[][] inputs;
+    private double[][] targets;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        int[] sizes = NetworkBenchmark.parseLayerSizes(layerSizes);
+        network = new Network(sizes);
+        model = network.toModel();
+
+        Path images = SyntheticIdx.writeTemp(batchSize, 7);
+        MnistDataset data = MnistDataset.open(images.toString(), images.resolveSibling("labels.idx1-ubyte").toString());
+        int inputSize = sizes[0];
+        int outputSize = sizes[sizes.length - 1];
+        flatInputs = new double[batchSize * inputSize];
+        flatOutputs = new double[batchSize * outputSize];
+        inputs = new double[batchSize][inputSize];
+        targets = new double[batchSize][outputSize];
+        for(int i = 0; i < batchSize; i++){
+            data.copyInput(i, inputs[i]);
+            System.arraycopy(inputs[i], 0, flatInputs, i * inputSize, inputSize);
+            targets[i][data.getLabel(i)] = 1;
+        }
+    }
+
+    @Benchmark
+    public double[] calculateBatch() throws NetworkException {
+        model.calculateBatch(flatInputs, flatOutputs, batchSize);
+        return flatOutputs;
+    }
+
+    @Benchmark
+    public Network trainMiniBatch() throws NetworkException {
+        network.train(inputs, targets, 0.3);
+        return network;
+    }
+}
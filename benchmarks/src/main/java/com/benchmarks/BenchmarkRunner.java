@@ -0,0 +1,30 @@
+package com.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+
+/**
+ * Entry point of {@code benchmarks.jar}. Accepts the usual JMH command line and always adds
+ * the GC profiler, so every result comes with its allocation rate ({@code gc.alloc.rate.norm}
+ * is bytes allocated per operation).
+ */
+public class BenchmarkRunner {
+    public static void main(String[] args) throws IOException, RunnerException, CommandLineOptionException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        if(commandLine.shouldHelp()){
+            commandLine.showHelp();
+            return;
+        }
+
+        new Runner(new OptionsBuilder()
+                .parent(commandLine)
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
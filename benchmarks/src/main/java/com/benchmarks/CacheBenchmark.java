@@ -0,0 +1,87 @@
+package com.benchmarks;
+
+import com.network.MnistDataset;
+import com.network.Network;
+import com.network.NetworkException;
+import com.network.NetworkModel;
+import com.network.PredictionCache;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single predictions on a stream of repeated inputs, with and without a
+ * {@link PredictionCache} of {@code CAPACITY} entries. Each call scores the next input of a
+ * fixed random stream drawn from {@code distinctInputs} images, so 16 inputs hit almost
+ * always and 4096 inputs mostly miss.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class CacheBenchmark {
+    private static final int CAPACITY = 256;
+    private static final int STREAM_LENGTH = 1 << 14;
+
+    @Param({"16", "256", "4096"})
+    public int distinctInputs;
+
+    private NetworkModel model;
+    private PredictionCache cache;
+    private double[][] stream;
+    private double[] output;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        model = new Network(784, 100, 100, 10).toModel();
+        cache = new PredictionCache(CAPACITY, 1, 256);
+        output = new double[model.getOutputSize()];
+
+        // Synthetic digits only have ten shapes, so each copy gets a few noise pixels.
+        Path images = SyntheticIdx.writeTemp(distinctInputs, 11);
+        MnistDataset data = MnistDataset.open(images.toString(), images.resolveSibling("labels.idx1-ubyte").toString());
+        Random random = new Random(3);
+        double[][] distinct = new double[distinctInputs][model.getInputSize()];
+        for(int i = 0; i < distinctInputs; i++){
+            data.copyInput(i, distinct[i]);
+            for(int j = 0; j < 4; j++) distinct[i][random.nextInt(distinct[i].length)] = random.nextDouble();
+        }
+
+        stream = new double[STREAM_LENGTH][];
+        for(int i = 0; i < STREAM_LENGTH; i++) stream[i] = distinct[random.nextInt(distinctInputs)];
+    }
+
+    @TearDown(Level.Trial)
+    public void report() {
+        if(cache.getHits() + cache.getMisses() == 0) return;
+
+        System.out.printf("%nhits %d, misses %d, evictions %d, hit rate %.3f%n",
+                cache.getHits(), cache.getMisses(), cache.getEvictions(), cache.getHitRate());
+    }
+
+    @Benchmark
+    public double[] uncached() throws NetworkException {
+        double[] input = stream[next++ & (STREAM_LENGTH - 1)];
+        model.calculate(input, output);
+        return output;
+    }
+
+    @Benchmark
+    public double[] cached() throws NetworkException {
+        double[] input = stream[next++ & (STREAM_LENGTH - 1)];
+        double[] result = cache.get(input, model);
+        if(result == null){
+            model.calculate(input, output);
+            cache.put(input, model, output);
+            result = output;
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,50 @@
+package com.benchmarks;
+
+import com.network.IdxFile;
+import com.network.MnistReader;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding a synthetic IDX image file, either fully into memory or sample by sample.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IdxBenchmark {
+    @Param({"10000", "60000"})
+    public int images;
+
+    private Path imageFile;
+    private double[] sample;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        imageFile = SyntheticIdx.writeTemp(images, 42);
+        sample = new double[SyntheticIdx.ROWS * SyntheticIdx.COLS];
+    }
+
+    @Benchmark
+    public double[][] loadImages() throws IOException {
+        return MnistReader.loadImages(imageFile.toString());
+    }
+
+    @Benchmark
+    public double streamSamples() throws IOException {
+        IdxFile file = new IdxFile(imageFile.toString());
+
+        double sum = 0;
+        for(int i = 0; i < file.size(); i++){
+            file.copySample(i, sample);
+            sum += sample[i % sample.length];
+        }
+
+        return sum;
+    }
+}
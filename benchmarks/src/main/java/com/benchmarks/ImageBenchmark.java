@@ -0,0 +1,63 @@
+package com.benchmarks;
+
+import com.network.ImageResampler;
+import com.numberGuesser.ImageTools;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Downscaling a drawing from the canvas size to the 28x28 network input, through the
+ * {@code double[][]} API of {@link ImageTools}, the flat {@link ImageResampler} API, and with
+ * MNIST-style cropping and centering. 3000 stands for a scanned sheet.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ImageBenchmark {
+    @Param({"200", "560", "3000"})
+    public int canvasSize;
+
+    private double[][] image;
+    private double[] flatImage;
+    private final double[] input = new double[28 * 28];
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(42);
+        image = new double[canvasSize][canvasSize];
+        for(int stroke = 0; stroke < 40; stroke++){
+            int row = random.nextInt(canvasSize - 10);
+            int col = random.nextInt(canvasSize - 10);
+            for(int i = 0; i < 10; i++){
+                image[row + i][col + i] = 255;
+            }
+        }
+
+        flatImage = new double[canvasSize * canvasSize];
+        for(int row = 0; row < canvasSize; row++){
+            System.arraycopy(image[row], 0, flatImage, row * canvasSize, canvasSize);
+        }
+    }
+
+    @Benchmark
+    public double[][] rescale() {
+        return ImageTools.rescale(image, 28, 28);
+    }
+
+    @Benchmark
+    public double[] rescaleFlat() {
+        ImageResampler.rescale(flatImage, canvasSize, canvasSize, input, 28, 28);
+        return input;
+    }
+
+    @Benchmark
+    public double[] normalizeDigit() {
+        ImageResampler.normalizeDigit(flatImage, canvasSize, canvasSize, input, 28, 20, 0);
+        return input;
+    }
+}
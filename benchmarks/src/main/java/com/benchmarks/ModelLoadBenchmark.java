@@ -0,0 +1,53 @@
+package com.benchmarks;
+
+import com.network.Network;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading a network from the text and the binary model format.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ModelLoadBenchmark {
+    @Param({"784-100-100-10", "784-512-512-10"})
+    public String layerSizes;
+
+    private Path textModel;
+    private Path binaryModel;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        Network network = new Network(NetworkBenchmark.parseLayerSizes(layerSizes));
+        Path dir = Files.createTempDirectory("model-io");
+        textModel = dir.resolve("network.txt");
+        binaryModel = dir.resolve("network.bin");
+        network.save(textModel.toString());
+        network.saveBinary(binaryModel.toString());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(textModel);
+        Files.deleteIfExists(binaryModel);
+        Files.deleteIfExists(textModel.getParent());
+    }
+
+    @Benchmark
+    public Network loadTextModel() throws IOException {
+        return new Network(textModel.toString());
+    }
+
+    @Benchmark
+    public Network loadBinaryModel() throws IOException {
+        return new Network(binaryModel.toString());
+    }
+}
@@ -0,0 +1,78 @@
+package com.benchmarks;
+
+import com.network.MnistDataset;
+import com.network.Network;
+import com.network.NetworkException;
+import com.network.NetworkModel;
+import com.network.NetworkWorkspace;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single-sample forward and training passes over synthetic digits, for each layer shape.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class NetworkBenchmark {
+    private static final int SAMPLES = 1024;
+
+    @Param({"784-100-100-10", "784-256-128-10", "784-512-512-10"})
+    public String layerSizes;
+
+    private Network network;
+    private NetworkModel model;
+    private NetworkWorkspace workspace;
+    private double[][] inputs;
+    private double[][] targets;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        int[] sizes = parseLayerSizes(layerSizes);
+        network = new Network(sizes);
+        model = network.toModel();
+        workspace = model.newWorkspace();
+
+        Path images = SyntheticIdx.writeTemp(SAMPLES, 42);
+        MnistDataset data = MnistDataset.open(images.toString(), images.resolveSibling("labels.idx1-ubyte").toString());
+        inputs = new double[SAMPLES][sizes[0]];
+        targets = new double[SAMPLES][sizes[sizes.length - 1]];
+        for(int i = 0; i < SAMPLES; i++){
+            data.copyInput(i, inputs[i]);
+            targets[i][data.getLabel(i)] = 1;
+        }
+    }
+
+    @Benchmark
+    public double[] networkCalculate() throws NetworkException {
+        return network.calculate(nextInput());
+    }
+
+    @Benchmark
+    public double[] modelCalculate() throws NetworkException {
+        return model.calculate(nextInput(), workspace);
+    }
+
+    @Benchmark
+    public Network networkTrain() throws NetworkException {
+        int sample = next++ & (SAMPLES - 1);
+        network.train(inputs[sample], targets[sample], 0.3);
+        return network;
+    }
+
+    private double[] nextInput() {
+        return inputs[next++ & (SAMPLES - 1)];
+    }
+
+    static int[] parseLayerSizes(String layerSizes) {
+        return Arrays.stream(layerSizes.split("-")).mapToInt(Integer::parseInt).toArray();
+    }
+}
@@ -0,0 +1,56 @@
+package com.benchmarks;
+
+import com.network.MnistDataset;
+import com.network.Network;
+import com.network.NetworkException;
+import com.network.Optimizer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mini-batch training steps with each optimizer. With a batch of one the update itself is a
+ * large part of the step, so this shows what the optimizer state costs per step.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class OptimizerBenchmark {
+    @Param({"sgd", "momentum", "nesterov", "adam"})
+    public String optimizer;
+
+    @Param({"1", "32"})
+    public int batchSize;
+
+    private Network network;
+    private double[][] inputs;
+    private double[][] targets;
+    private double learningRate;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        network = new Network(784, 100, 100, 10);
+        network.setOptimizer(Optimizer.parse(optimizer));
+        learningRate = optimizer.equals("adam") ? 0.001 : 0.01;
+
+        Path images = SyntheticIdx.writeTemp(batchSize, 11);
+        MnistDataset data = MnistDataset.open(images.toString(), images.resolveSibling("labels.idx1-ubyte").toString());
+        inputs = new double[batchSize][784];
+        targets = new double[batchSize][10];
+        for(int i = 0; i < batchSize; i++){
+            data.copyInput(i, inputs[i]);
+            targets[i][data.getLabel(i)] = 1;
+        }
+    }
+
+    @Benchmark
+    public Network trainStep() throws NetworkException {
+        network.train(inputs, targets, learningRate);
+        return network;
+    }
+}
@@ -0,0 +1,113 @@
+package com.benchmarks;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Writes MNIST-shaped IDX files so the benchmarks run without downloading the real data set.
+ * Each image is the seven-segment shape of its label, drawn with a jittered, anti-aliased
+ * pen, which gives roughly the sparsity of real digits and something a network can learn.
+ */
+public class SyntheticIdx {
+    public static final int ROWS = 28;
+    public static final int COLS = 28;
+
+    // Segments a to g as {x1, y1, x2, y2} in a 10x18 box, and the segments lit per digit.
+    private static final int[][] SEGMENTS = {
+            {0, 0, 10, 0}, {10, 0, 10, 9}, {10, 9, 10, 18}, {0, 18, 10, 18}, {0, 9, 0, 18}, {0, 0, 0, 9}, {0, 9, 10, 9}
+    };
+    private static final String[] DIGITS = {
+            "abcdef", "bc", "abged", "abgcd", "fgbc", "afgcd", "afgedc", "abc", "abcdefg", "abcdfg"
+    };
+
+    public static void main(String[] args) throws IOException {
+        if(args.length < 2){
+            System.err.println("Usage: SyntheticIdx <output prefix> <count> [seed]");
+            System.exit(1);
+        }
+
+        int count = Integer.parseInt(args[1]);
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 42;
+        write(args[0] + "-images.idx3-ubyte", args[0] + "-labels.idx1-ubyte", count, seed);
+    }
+
+    /**
+     * Writes {@code count} images and labels to temporary files and returns the image path;
+     * the label file sits next to it with "labels" in place of "images".
+     */
+    public static Path writeTemp(int count, long seed) throws IOException {
+        Path dir = Files.createTempDirectory("synthetic-mnist");
+        Path images = dir.resolve("images.idx3-ubyte");
+        Path labels = dir.resolve("labels.idx1-ubyte");
+        write(images.toString(), labels.toString(), count, seed);
+
+        images.toFile().deleteOnExit();
+        labels.toFile().deleteOnExit();
+        dir.toFile().deleteOnExit();
+        return images;
+    }
+
+    public static void write(String imagesPath, String labelsPath, int count, long seed) throws IOException {
+        Random random = new Random(seed);
+
+        try(DataOutputStream images = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(imagesPath)));
+            DataOutputStream labels = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(labelsPath)))){
+            images.writeInt(0x00000803);
+            images.writeInt(count);
+            images.writeInt(ROWS);
+            images.writeInt(COLS);
+            labels.writeInt(0x00000801);
+            labels.writeInt(count);
+
+            byte[] pixels = new byte[ROWS * COLS];
+            for(int i = 0; i < count; i++){
+                int label = random.nextInt(10);
+                drawDigit(pixels, label, random);
+
+                images.write(pixels);
+                labels.writeByte(label);
+            }
+        }
+    }
+
+    private static void drawDigit(byte[] pixels, int digit, Random random) {
+        Arrays.fill(pixels, (byte) 0);
+
+        double scale = 0.9 + 0.2 * random.nextDouble();
+        double slant = 0.25 * random.nextGaussian();
+        double left = 9 + 2 * random.nextGaussian();
+        double top = 5 + random.nextGaussian();
+        double pen = 1.2 + 0.4 * random.nextDouble();
+
+        for(char segment : DIGITS[digit].toCharArray()){
+            int[] s = SEGMENTS[segment - 'a'];
+            double x1 = left + scale * (s[0] + slant * (18 - s[1])), y1 = top + scale * s[1];
+            double x2 = left + scale * (s[2] + slant * (18 - s[3])), y2 = top + scale * s[3];
+
+            int steps = (int) Math.ceil(2 * Math.hypot(x2 - x1, y2 - y1)) + 1;
+            for(int step = 0; step <= steps; step++){
+                double t = (double) step / steps;
+                stamp(pixels, x1 + t * (x2 - x1) + 0.3 * random.nextGaussian(), y1 + t * (y2 - y1) + 0.3 * random.nextGaussian(), pen);
+            }
+        }
+    }
+
+    private static void stamp(byte[] pixels, double x, double y, double radius) {
+        for(int row = (int) (y - radius - 1); row <= (int) (y + radius + 1); row++){
+            for(int col = (int) (x - radius - 1); col <= (int) (x + radius + 1); col++){
+                if(row < 0 || row >= ROWS || col < 0 || col >= COLS) continue;
+
+                double distance = Math.hypot(col + 0.5 - x, row + 0.5 - y);
+                int value = (int) Math.round(255 * Math.max(0, Math.min(1, radius + 0.5 - distance)));
+                int index = row * COLS + col;
+                if(value > (pixels[index] & 0xff)) pixels[index] = (byte) value;
+            }
+        }
+    }
+}
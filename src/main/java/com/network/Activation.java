@@ -0,0 +1,180 @@
+package com.network;
+
+/**
+ * Activation function of a layer. Derivatives are expressed through the activation's output,
+ * which is what the backward pass has at hand. The output layer's error signal also depends
+ * on the loss: mean squared error for the elementwise activations, cross-entropy for
+ * {@link #SOFTMAX}. Binary model files store the ordinal, so new activations go at the end.
+ */
+public enum Activation {
+    SIGMOID("sigmoid") {
+        @Override
+        public double apply(double x) {
+            return 1d / (1 + Math.exp(-x));
+        }
+
+        @Override
+        public double derivative(double output) {
+            return output * (1 - output);
+        }
+
+        @Override
+        public double errorSignal(double output, double target) {
+            return (output - target) * output * (1 - output);
+        }
+    },
+
+    /**
+     * Sigmoid read from a lookup table with linear interpolation. Over [-16, 16] the absolute
+     * error is below 1e-6; outside that range the exact limits 0 and 1 are off by at most 1.2e-7.
+     */
+    FAST_SIGMOID("fast-sigmoid") {
+        @Override
+        public double apply(double x) {
+            if(x <= -FAST_SIGMOID_RANGE) return FAST_SIGMOID_TABLE[0];
+            if(x >= FAST_SIGMOID_RANGE) return FAST_SIGMOID_TABLE[FAST_SIGMOID_STEPS];
+
+            double position = (x + FAST_SIGMOID_RANGE) * FAST_SIGMOID_SCALE;
+            int index = (int) position;
+            double fraction = position - index;
+            return FAST_SIGMOID_TABLE[index] + fraction * (FAST_SIGMOID_TABLE[index + 1] - FAST_SIGMOID_TABLE[index]);
+        }
+
+        @Override
+        public double derivative(double output) {
+            return output * (1 - output);
+        }
+    },
+
+    TANH("tanh") {
+        @Override
+        public double apply(double x) {
+            return Math.tanh(x);
+        }
+
+        @Override
+        public double derivative(double output) {
+            return 1 - output * output;
+        }
+    },
+
+    RELU("relu") {
+        @Override
+        public double apply(double x) {
+            return x > 0 ? x : 0;
+        }
+
+        @Override
+        public double derivative(double output) {
+            return output > 0 ? 1 : 0;
+        }
+    },
+
+    /**
+     * Normalized exponentials over the whole layer, trained with cross-entropy loss. Only valid
+     * for the output layer.
+     */
+    SOFTMAX("softmax") {
+        @Override
+        public double apply(double x) {
+            throw new UnsupportedOperationException("Softmax is only defined over a whole layer");
+        }
+
+        @Override
+        public void apply(double[] values, int offset, int length) {
+            double max = Double.NEGATIVE_INFINITY;
+            for(int i = offset; i < offset + length; i++) max = Math.max(max, values[i]);
+
+            double sum = 0;
+            for(int i = offset; i < offset + length; i++){
+                values[i] = Math.exp(values[i] - max);
+                sum += values[i];
+            }
+
+            for(int i = offset; i < offset + length; i++) values[i] /= sum;
+        }
+
+        @Override
+        public void apply(float[] values, int offset, int length) {
+            float max = Float.NEGATIVE_INFINITY;
+            for(int i = offset; i < offset + length; i++) max = Math.max(max, values[i]);
+
+            float sum = 0;
+            for(int i = offset; i < offset + length; i++){
+                values[i] = (float) Math.exp(values[i] - max);
+                sum += values[i];
+            }
+
+            for(int i = offset; i < offset + length; i++) values[i] /= sum;
+        }
+
+        @Override
+        public double derivative(double output) {
+            throw new UnsupportedOperationException("Softmax is only supported on the output layer");
+        }
+
+        @Override
+        public double errorSignal(double output, double target) {
+            return output - target;
+        }
+    };
+
+    private static final double FAST_SIGMOID_RANGE = 16;
+    private static final int FAST_SIGMOID_STEPS = 4096;
+    private static final double FAST_SIGMOID_SCALE = FAST_SIGMOID_STEPS / (2 * FAST_SIGMOID_RANGE);
+    private static final double[] FAST_SIGMOID_TABLE = new double[FAST_SIGMOID_STEPS + 1];
+    static {
+        for(int i = 0; i <= FAST_SIGMOID_STEPS; i++){
+            FAST_SIGMOID_TABLE[i] = 1d / (1 + Math.exp(FAST_SIGMOID_RANGE - i / FAST_SIGMOID_SCALE));
+        }
+    }
+
+    private final String name;
+
+    Activation(String name) {
+        this.name = name;
+    }
+
+    public abstract double apply(double x);
+
+    public abstract double derivative(double output);
+
+    /**
+     * Error signal of an output neuron, i.e. the derivative of the loss with respect to the
+     * neuron's weighted input.
+     */
+    public double errorSignal(double output, double target) {
+        return (output - target) * derivative(output);
+    }
+
+    public void apply(double[] values, int offset, int length) {
+        for(int i = offset; i < offset + length; i++){
+            values[i] = apply(values[i]);
+        }
+    }
+
+    public void apply(float[] values, int offset, int length) {
+        for(int i = offset; i < offset + length; i++){
+            values[i] = (float) apply(values[i]);
+        }
+    }
+
+    /**
+     * Whether every output lies in [0, 1], which the int8 model relies on.
+     */
+    public boolean isUnitRange() {
+        return this == SIGMOID || this == FAST_SIGMOID || this == SOFTMAX;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public static Activation forName(String name) {
+        for(Activation activation : values()){
+            if(activation.name.equals(name)) return activation;
+        }
+
+        throw new IllegalArgumentException("Unknown activation " + name);
+    }
+}
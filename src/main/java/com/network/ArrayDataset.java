@@ -0,0 +1,36 @@
+package com.network;
+
+/**
+ * {@link Dataset} over samples that are already in memory.
+ */
+public class ArrayDataset implements Dataset {
+    private final double[][] inputs;
+    private final int[] labels;
+
+    public ArrayDataset(double[][] inputs, int[] labels) {
+        if(inputs.length != labels.length) throw new IllegalArgumentException("Expected one label per input, but found " + inputs.length + " inputs and " + labels.length + " labels");
+
+        this.inputs = inputs;
+        this.labels = labels;
+    }
+
+    @Override
+    public int size() {
+        return inputs.length;
+    }
+
+    @Override
+    public int getInputSize() {
+        return inputs.length == 0 ? 0 : inputs[0].length;
+    }
+
+    @Override
+    public void copyInput(int index, double[] dest) {
+        System.arraycopy(inputs[index], 0, dest, 0, inputs[index].length);
+    }
+
+    @Override
+    public int getLabel(int index) {
+        return labels[index];
+    }
+}
@@ -0,0 +1,337 @@
+package com.network;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.stream.Stream;
+
+/**
+ * Headless batch scoring of an IDX image file or a directory of PNG files, without JavaFX.
+ * Usage:
+ * <pre>
+ *   BatchScorer [--model network.bin] [--threads n] [--output predictions.csv] --idx images [--labels labels]
+ *   BatchScorer [--model network.bin] [--threads n] [--output predictions.csv] [--invert] [--center] --png directory
+ * </pre>
+ * A producer thread hands sample indices to a pool of workers, which decode, preprocess and
+ * score them in parallel and pass the results on to the main thread, which writes the CSV
+ * ({@code id,prediction,confidence,label}) and collects the statistics. PNGs are converted by
+ * {@link ImageDecoder}; {@code --invert} is for dark digits on a light background, and
+ * {@code --center} crops and centers each digit like the MNIST images. A PNG is
+ * labeled when its parent directory is named after a digit.
+ */
+public class BatchScorer {
+    private static final int QUEUE_CAPACITY = 1024;
+    private static final int END = -1;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String modelPath = Path.of("src", "main", "resources", "com", "networks", "network.bin").toString();
+        String idxPath = null, labelsPath = null, pngDir = null, outputPath = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean invert = false, center = false;
+
+        for(int i = 0; i < args.length; i++){
+            switch(args[i]){
+                case "--model" -> modelPath = args[++i];
+                case "--idx" -> idxPath = args[++i];
+                case "--labels" -> labelsPath = args[++i];
+                case "--png" -> pngDir = args[++i];
+                case "--output" -> outputPath = args[++i];
+                case "--threads" -> threads = Integer.parseInt(args[++i]);
+                case "--invert" -> invert = true;
+                case "--center" -> center = true;
+                default -> usage("Unknown option " + args[i]);
+            }
+        }
+        if((idxPath == null) == (pngDir == null)) usage("Expected exactly one of --idx and --png");
+        if(threads < 1) usage("Thread count must be positive");
+
+        NetworkModel model = NetworkModel.load(modelPath);
+        SampleSource source = idxPath != null ? new IdxSource(idxPath, labelsPath) : new PngSource(pngDir, invert, center);
+        if(source.getInputSize() != model.getInputSize()) throw new IOException("Samples have " + source.getInputSize() + " values, but the model expects " + model.getInputSize());
+
+        PrintStream summary = outputPath == null ? System.err : System.out;
+        try(PrintWriter csv = outputPath == null ? new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out))) : new PrintWriter(Files.newBufferedWriter(Path.of(outputPath)))){
+            Report report = score(model, source, threads, csv);
+            csv.flush();
+            report.print(summary);
+        }
+    }
+
+    private static void usage(String message) {
+        System.err.println(message);
+        System.err.println("Usage: BatchScorer [--model path] [--threads n] [--output csv] (--idx images [--labels labels] | --png directory [--invert] [--center])");
+        System.exit(1);
+    }
+
+    /**
+     * Scores every sample of {@code source} on {@code threads} workers and writes one CSV row
+     * per sample in completion order.
+     */
+    public static Report score(InferenceModel model, SampleSource source, int threads, PrintWriter csv) throws InterruptedException {
+        int count = source.size();
+        BlockingQueue<Integer> tasks = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        BlockingQueue<Result> results = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+
+        long start = System.nanoTime();
+        Thread producer = new Thread(() -> {
+            try{
+                for(int i = 0; i < count; i++) tasks.put(i);
+                for(int i = 0; i < threads; i++) tasks.put(END);
+            }catch(InterruptedException e){
+                Thread.currentThread().interrupt();
+            }
+        }, "batch-producer");
+        producer.setDaemon(true);
+        producer.start();
+
+        List<Thread> workers = new ArrayList<>(threads);
+        for(int w = 0; w < threads; w++){
+            Thread worker = new Thread(() -> work(model, source, tasks, results), "batch-worker-" + w);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+
+        Report report = new Report(model.getOutputSize());
+        csv.println("id,prediction,confidence,label");
+        for(int finished = 0; finished < threads;){
+            Result result = results.take();
+            if(result.index == END){
+                finished++;
+                continue;
+            }
+
+            String id = source.getId(result.index);
+            if(result.error != null){
+                System.err.println("Skipping " + id + ": " + result.error);
+                report.failures++;
+                continue;
+            }
+
+            int label = source.getLabel(result.index);
+            csv.println(id + "," + result.prediction + "," + String.format("%.4f", result.confidence) + "," + (label < 0 ? "" : label));
+            report.add(result.prediction, label, result.nanos);
+        }
+        report.seconds = (System.nanoTime() - start) / 1e9;
+
+        return report;
+    }
+
+    private static void work(InferenceModel model, SampleSource source, BlockingQueue<Integer> tasks, BlockingQueue<Result> results) {
+        double[] input = new double[model.getInputSize()];
+        double[] output = new double[model.getOutputSize()];
+
+        try{
+            while(true){
+                int index = tasks.take();
+                if(index == END) break;
+
+                long start = System.nanoTime();
+                try{
+                    source.copyInput(index, input);
+                    model.calculate(input, output);
+
+                    int prediction = InferenceModel.argMax(output);
+                    results.put(new Result(index, prediction, output[prediction], System.nanoTime() - start, null));
+                }catch(IOException | NetworkException e){
+                    results.put(new Result(index, -1, 0, 0, e.getMessage()));
+                }catch(RuntimeException e){
+                    // A malformed file can trip anything in the decoder; it fails only its own sample.
+                    results.put(new Result(index, -1, 0, 0, e.toString()));
+                }
+            }
+        }catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+        }finally{
+            // score() counts one END per worker, so it is posted even if the worker dies.
+            try{
+                results.put(new Result(END, -1, 0, 0, null));
+            }catch(InterruptedException e){
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Samples to score. {@link #copyInput} is called concurrently from several workers.
+     */
+    public interface SampleSource {
+        int size();
+
+        int getInputSize();
+
+        String getId(int index);
+
+        /**
+         * The true digit of a sample, or -1 if it is unknown.
+         */
+        int getLabel(int index);
+
+        void copyInput(int index, double[] input) throws IOException;
+    }
+
+    private static final class IdxSource implements SampleSource {
+        private final IdxFile images;
+        private final IdxFile labels;
+
+        private IdxSource(String imagesPath, String labelsPath) throws IOException {
+            this.images = new IdxFile(imagesPath);
+            this.labels = labelsPath == null ? null : new IdxFile(labelsPath);
+            if(labels != null && labels.size() != images.size()) throw new IOException("Expected one label per image, but found " + images.size() + " images and " + labels.size() + " labels");
+        }
+
+        @Override
+        public int size() {
+            return images.size();
+        }
+
+        @Override
+        public int getInputSize() {
+            return images.getSampleSize();
+        }
+
+        @Override
+        public String getId(int index) {
+            return Integer.toString(index);
+        }
+
+        @Override
+        public int getLabel(int index) {
+            return labels == null ? -1 : labels.getUnsigned(index, 0);
+        }
+
+        @Override
+        public void copyInput(int index, double[] input) {
+            images.copySample(index, input);
+        }
+    }
+
+    private static final class PngSource implements SampleSource {
+        private static final int SIDE = 28;
+        private final List<Path> files;
+        private final ThreadLocal<ImageDecoder> decoders;
+
+        private PngSource(String directory, boolean invert, boolean center) throws IOException {
+            try(Stream<Path> paths = Files.walk(Path.of(directory))){
+                this.files = paths.filter(path -> path.toString().toLowerCase().endsWith(".png")).sorted().toList();
+            }
+            this.decoders = ThreadLocal.withInitial(() -> new ImageDecoder(SIDE, invert, center));
+        }
+
+        @Override
+        public int size() {
+            return files.size();
+        }
+
+        @Override
+        public int getInputSize() {
+            return SIDE * SIDE;
+        }
+
+        @Override
+        public String getId(int index) {
+            return files.get(index).toString();
+        }
+
+        @Override
+        public int getLabel(int index) {
+            Path parent = files.get(index).getParent();
+            String name = parent == null ? "" : parent.getFileName().toString();
+
+            return name.length() == 1 && Character.isDigit(name.charAt(0)) ? name.charAt(0) - '0' : -1;
+        }
+
+        @Override
+        public void copyInput(int index, double[] input) throws IOException {
+            BufferedImage image = ImageIO.read(files.get(index).toFile());
+            if(image == null) throw new IOException("Not a readable image");
+
+            decoders.get().decode(image, input);
+        }
+    }
+
+    private static final class Result {
+        private final int index;
+        private final int prediction;
+        private final double confidence;
+        private final long nanos;
+        private final String error;
+
+        private Result(int index, int prediction, double confidence, long nanos, String error) {
+            this.index = index;
+            this.prediction = prediction;
+            this.confidence = confidence;
+            this.nanos = nanos;
+            this.error = error;
+        }
+    }
+
+    /**
+     * Throughput, latency percentiles and, for labeled samples, accuracy and the confusion
+     * matrix (rows are true labels, columns predictions).
+     */
+    public static final class Report {
+        private final int[][] confusion;
+        private final LatencyHistogram latencies = new LatencyHistogram();
+        private int scored;
+        private int labeled;
+        private int correct;
+        private int failures;
+        private double seconds;
+
+        private Report(int classes) {
+            this.confusion = new int[classes][classes];
+        }
+
+        private void add(int prediction, int label, long nanos) {
+            latencies.record(nanos);
+            scored++;
+            if(label < 0 || label >= confusion.length) return;
+
+            labeled++;
+            confusion[label][prediction]++;
+            if(label == prediction) correct++;
+        }
+
+        public double getThroughput() {
+            return scored / seconds;
+        }
+
+        /**
+         * Per-sample latency in milliseconds at {@code percentile} (0 to 100), from the start
+         * of decoding to the end of inference, with the resolution of a {@link LatencyHistogram}.
+         */
+        public double getLatency(double percentile) {
+            return latencies.getPercentile(percentile) / 1e6;
+        }
+
+        public int[][] getConfusionMatrix() {
+            int[][] res = new int[confusion.length][];
+            for(int i = 0; i < confusion.length; i++) res[i] = confusion[i].clone();
+
+            return res;
+        }
+
+        public void print(PrintStream out) {
+            out.printf("Scored %d samples in %.2fs: %.0f samples/s, latency p50 %.3fms, p99 %.3fms%n", scored, seconds, getThroughput(), getLatency(50), getLatency(99));
+            if(failures > 0) out.println("Failed to read " + failures + " samples");
+            if(labeled == 0) return;
+
+            out.printf("Accuracy: %d / %d (%.2f%%)%n", correct, labeled, 100.0 * correct / labeled);
+            out.print("true\\pred");
+            for(int prediction = 0; prediction < confusion.length; prediction++) out.printf("%6d", prediction);
+            out.println();
+            for(int label = 0; label < confusion.length; label++){
+                out.printf("%9d", label);
+                for(int prediction = 0; prediction < confusion.length; prediction++) out.printf("%6d", confusion[label][prediction]);
+                out.println();
+            }
+        }
+    }
+}
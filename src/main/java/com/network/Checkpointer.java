@@ -0,0 +1,123 @@
+package com.network;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Writes {@link TrainingCheckpoint}s every {@code everySteps} optimizer steps. The training
+ * thread only copies the weights; a background thread writes each file under a temporary name
+ * and renames it into place, so a crash never leaves a partial checkpoint behind. If a write
+ * is still running when the next checkpoint is due, the waiting snapshot is replaced by the
+ * newer one. The newest {@code keep} checkpoints are kept.
+ */
+public class Checkpointer implements AutoCloseable {
+    private final Path directory;
+    private final int everySteps;
+    private final int keep;
+    private final ExecutorService writer;
+    private final AtomicReference<Snapshot> pending = new AtomicReference<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private volatile TrainingCheckpoint lastWritten;
+
+    public Checkpointer(Path directory, int everySteps, int keep) throws IOException {
+        if(everySteps < 1) throw new IllegalArgumentException("Checkpoint interval must be positive, but found " + everySteps);
+        if(keep < 1) throw new IllegalArgumentException("At least one checkpoint must be kept, but found " + keep);
+
+        this.directory = directory;
+        this.everySteps = everySteps;
+        this.keep = keep;
+        Files.createDirectories(directory);
+        this.writer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "checkpoint-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    boolean isDue(long steps) {
+        return steps % everySteps == 0;
+    }
+
+    /**
+     * Snapshots {@code network} and its optimizer and queues them for writing together with {@code state}.
+     */
+    void save(Network network, TrainingCheckpoint state) {
+        pending.set(new Snapshot(network.snapshot(), network.snapshotOptimizer(), state));
+        if(scheduled.compareAndSet(false, true)) writer.execute(this::run);
+    }
+
+    /**
+     * The newest checkpoint written so far, or null.
+     */
+    public TrainingCheckpoint getLastWritten() {
+        return lastWritten;
+    }
+
+    private void run() {
+        scheduled.set(false);
+        Snapshot snapshot = pending.getAndSet(null);
+        if(snapshot == null) return;
+
+        try{
+            write(snapshot);
+        }catch(IOException e){
+            // Training goes on; the previous checkpoint is still intact.
+            System.err.println("Could not write checkpoint at " + snapshot.state + ": " + e.getMessage());
+        }
+    }
+
+    private void write(Snapshot snapshot) throws IOException {
+        String name = String.format("%s%012d", TrainingCheckpoint.PREFIX, snapshot.state.getSteps());
+        Path model = directory.resolve(name + TrainingCheckpoint.MODEL_SUFFIX);
+        Path state = directory.resolve(name + TrainingCheckpoint.STATE_SUFFIX);
+        TrainingCheckpoint checkpoint = snapshot.state.at(snapshot.state.getEpoch(), snapshot.state.getSample(), snapshot.state.getSteps(), model);
+
+        Path modelTemp = directory.resolve(name + TrainingCheckpoint.MODEL_SUFFIX + ".tmp");
+        ModelFile.writeBinary(modelTemp.toString(), snapshot.parameters, false);
+        Files.move(modelTemp, model, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        if(!snapshot.optimizer.isPlainSgd()) snapshot.optimizer.save(Optimizer.stateFile(model.toString()));
+
+        Path stateTemp = directory.resolve(name + TrainingCheckpoint.STATE_SUFFIX + ".tmp");
+        checkpoint.write(stateTemp);
+        Files.move(stateTemp, state, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        lastWritten = checkpoint;
+
+        List<Path> states = TrainingCheckpoint.list(directory);
+        for(Path old : states.subList(Math.min(keep, states.size()), states.size())){
+            String oldName = old.getFileName().toString();
+            String oldModel = oldName.substring(0, oldName.length() - TrainingCheckpoint.STATE_SUFFIX.length()) + TrainingCheckpoint.MODEL_SUFFIX;
+            Files.deleteIfExists(old);
+            Files.deleteIfExists(old.resolveSibling(oldModel));
+            Files.deleteIfExists(old.resolveSibling(Optimizer.stateFile(oldModel)));
+        }
+    }
+
+    /**
+     * Waits until every queued checkpoint is written.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        writer.shutdown();
+        writer.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    }
+
+    private static final class Snapshot {
+        private final NetworkParameters parameters;
+        private final Optimizer optimizer;
+        private final TrainingCheckpoint state;
+
+        private Snapshot(NetworkParameters parameters, Optimizer optimizer, TrainingCheckpoint state) {
+            this.parameters = parameters;
+            this.optimizer = optimizer;
+            this.state = state;
+        }
+    }
+}
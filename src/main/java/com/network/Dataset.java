@@ -0,0 +1,15 @@
+package com.network;
+
+/**
+ * Labelled samples addressed by index. Implementations must allow concurrent reads, since
+ * trainers and evaluators copy samples from several threads at once.
+ */
+public interface Dataset {
+    int size();
+
+    int getInputSize();
+
+    void copyInput(int index, double[] dest);
+
+    int getLabel(int index);
+}
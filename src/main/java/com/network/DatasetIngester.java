@@ -0,0 +1,209 @@
+package com.network;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/**
+ * Converts a directory of labelled PNGs into IDX shards that {@link MnistDataset} and
+ * {@link ShardedDataset} read directly. A PNG is labelled by its parent directory
+ * ({@code digits/7/a.png} is a 7); files without a digit directory or that cannot be decoded
+ * are skipped. Usage:
+ * {@code DatasetIngester --png directory --output directory [--shard-size 10000] [--threads n] [--invert] [--center]}
+ * <p>
+ * Workers decode and scale the files with {@link ImageDecoder}. Results are collected in file
+ * order through a bounded window, so memory stays constant. Shard {@code k} holds files
+ * {@code k * shardSize} up to {@code (k + 1) * shardSize} of the sorted file list, which is
+ * saved as {@code files.txt} on the first run. Each shard is written under a temporary name and
+ * renamed. An interrupted run therefore resumes at the first missing shard.
+ */
+public class DatasetIngester {
+    public static final String MANIFEST = "files.txt";
+    public static final String IMAGES_SUFFIX = "-images.idx3-ubyte";
+    public static final String LABELS_SUFFIX = "-labels.idx1-ubyte";
+    private static final int SIDE = 28;
+    private static final int IMAGE_MAGIC = 0x00000803;
+    private static final int LABEL_MAGIC = 0x00000801;
+    private static final long PROGRESS_NANOS = 2_000_000_000L;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String pngDir = null, outputDir = null;
+        int shardSize = 10_000, threads = Runtime.getRuntime().availableProcessors();
+        boolean invert = false, center = false;
+
+        for(int i = 0; i < args.length; i++){
+            switch(args[i]){
+                case "--png" -> pngDir = args[++i];
+                case "--output" -> outputDir = args[++i];
+                case "--shard-size" -> shardSize = Integer.parseInt(args[++i]);
+                case "--threads" -> threads = Integer.parseInt(args[++i]);
+                case "--invert" -> invert = true;
+                case "--center" -> center = true;
+                default -> usage("Unknown option " + args[i]);
+            }
+        }
+        if(pngDir == null || outputDir == null) usage("Expected --png and --output");
+        if(shardSize < 1 || threads < 1) usage("Shard size and thread count must be positive");
+
+        ingest(Path.of(pngDir), Path.of(outputDir), shardSize, threads, invert, center);
+    }
+
+    private static void usage(String message) {
+        System.err.println(message);
+        System.err.println("Usage: DatasetIngester --png directory --output directory [--shard-size 10000] [--threads n] [--invert] [--center]");
+        System.exit(1);
+    }
+
+    /**
+     * Ingests every PNG below {@code pngDir} into shards in {@code outputDir}, skipping shards
+     * that a previous run already completed. Returns the number of files decoded in this run.
+     */
+    public static long ingest(Path pngDir, Path outputDir, int shardSize, int threads, boolean invert, boolean center) throws IOException, InterruptedException {
+        Files.createDirectories(outputDir);
+        List<Path> files = manifest(pngDir, outputDir);
+        int shards = (files.size() + shardSize - 1) / shardSize;
+
+        int firstShard = 0;
+        while(firstShard < shards && isComplete(outputDir, firstShard)) firstShard++;
+        if(firstShard > 0) System.out.println("Resuming at shard " + firstShard + " of " + shards);
+
+        ThreadLocal<ImageDecoder> decoders = ThreadLocal.withInitial(() -> new ImageDecoder(SIDE, invert, center));
+        ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "ingest-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        long start = System.nanoTime(), lastReport = start;
+        long decoded = 0, skipped = 0;
+        int window = threads * 32;
+        int next = firstShard * shardSize;
+        Deque<Future<byte[]>> pending = new ArrayDeque<>();
+        try{
+            for(int shard = firstShard; shard < shards; shard++){
+                int from = shard * shardSize;
+                int to = Math.min(from + shardSize, files.size());
+                byte[] images = new byte[(to - from) * SIDE * SIDE];
+                byte[] labels = new byte[to - from];
+                int count = 0;
+
+                for(int i = from; i < to; i++){
+                    while(next < files.size() && pending.size() < window){
+                        Path file = files.get(next++);
+                        pending.add(pool.submit(() -> label(file) < 0 ? null : decode(file, decoders.get())));
+                    }
+
+                    byte[] pixels = take(pending.removeFirst());
+                    int label = label(files.get(i));
+                    if(pixels == null || label < 0){
+                        skipped++;
+                        continue;
+                    }
+
+                    System.arraycopy(pixels, 0, images, count * SIDE * SIDE, pixels.length);
+                    labels[count++] = (byte) label;
+                    decoded++;
+
+                    long now = System.nanoTime();
+                    if(now - lastReport >= PROGRESS_NANOS){
+                        System.out.printf("%d files, %.0f files/s%n", decoded + skipped, (decoded + skipped) / ((now - start) / 1e9));
+                        lastReport = now;
+                    }
+                }
+
+                writeShard(outputDir, shard, images, labels, count);
+            }
+        }finally{
+            pool.shutdownNow();
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Ingested %d files into %d shards in %.2fs (%.0f files/s), skipped %d%n", decoded, shards - firstShard, seconds, (decoded + skipped) / Math.max(seconds, 1e-9), skipped);
+        return decoded;
+    }
+
+    public static String shardName(int shard) {
+        return String.format("shard-%05d", shard);
+    }
+
+    private static List<Path> manifest(Path pngDir, Path outputDir) throws IOException {
+        Path manifest = outputDir.resolve(MANIFEST);
+        if(Files.exists(manifest)){
+            try(Stream<String> lines = Files.lines(manifest)){
+                return lines.filter(line -> !line.isBlank()).map(pngDir::resolve).toList();
+            }
+        }
+
+        List<Path> files;
+        try(Stream<Path> paths = Files.walk(pngDir)){
+            files = paths.filter(path -> path.toString().toLowerCase().endsWith(".png")).sorted().toList();
+        }
+
+        Path temp = outputDir.resolve(MANIFEST + ".tmp");
+        Files.write(temp, files.stream().map(file -> pngDir.relativize(file).toString()).toList());
+        Files.move(temp, manifest, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return files;
+    }
+
+    private static boolean isComplete(Path outputDir, int shard) {
+        return Files.exists(outputDir.resolve(shardName(shard) + IMAGES_SUFFIX)) && Files.exists(outputDir.resolve(shardName(shard) + LABELS_SUFFIX));
+    }
+
+    private static byte[] decode(Path file, ImageDecoder decoder) {
+        double[] input = new double[SIDE * SIDE];
+        try{
+            decoder.decode(Files.readAllBytes(file), input);
+        }catch(IOException e){
+            System.err.println("Skipping " + file + ": " + e.getMessage());
+            return null;
+        }
+
+        byte[] pixels = new byte[input.length];
+        for(int i = 0; i < input.length; i++){
+            pixels[i] = (byte) Math.round(Math.max(0, Math.min(1, input[i])) * 255);
+        }
+
+        return pixels;
+    }
+
+    private static int label(Path file) {
+        Path parent = file.getParent();
+        String name = parent == null ? "" : parent.getFileName().toString();
+        return name.length() == 1 && Character.isDigit(name.charAt(0)) ? name.charAt(0) - '0' : -1;
+    }
+
+    private static byte[] take(Future<byte[]> future) throws IOException, InterruptedException {
+        try{
+            return future.get();
+        }catch(ExecutionException e){
+            throw new IOException("Ingest worker failed", e.getCause());
+        }
+    }
+
+    // Labels go first, so a shard counts as complete only once its images exist as well.
+    private static void writeShard(Path outputDir, int shard, byte[] images, byte[] labels, int count) throws IOException {
+        String name = shardName(shard);
+        writeIdx(outputDir.resolve(name + LABELS_SUFFIX), ByteBuffer.allocate(8).putInt(LABEL_MAGIC).putInt(count), labels, count);
+        writeIdx(outputDir.resolve(name + IMAGES_SUFFIX), ByteBuffer.allocate(16).putInt(IMAGE_MAGIC).putInt(count).putInt(SIDE).putInt(SIDE), images, count * SIDE * SIDE);
+    }
+
+    private static void writeIdx(Path path, ByteBuffer header, byte[] data, int length) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try(OutputStream out = Files.newOutputStream(temp)){
+            out.write(header.array());
+            out.write(data, 0, length);
+        }
+        Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+}
@@ -0,0 +1,33 @@
+package com.network;
+
+/**
+ * Inner loops of the dense layers. The implementation is picked once at startup: the
+ * {@code jdk.incubator.vector} kernels when that module is resolved (run with
+ * {@code --add-modules jdk.incubator.vector}), the plain Java loops otherwise or when
+ * {@code -Dnetwork.kernels=scalar} is set. Both compute exactly the same values.
+ */
+abstract class DenseKernels {
+    static final DenseKernels INSTANCE = select();
+
+    /**
+     * {@code y[yOffset + i] += a * x[xOffset + i]} for {@code i} in {@code [0, length)}.
+     */
+    abstract void axpy(double a, double[] x, int xOffset, double[] y, int yOffset, int length);
+
+    abstract void axpy(float a, float[] x, int xOffset, float[] y, int yOffset, int length);
+
+    abstract String name();
+
+    private static DenseKernels select() {
+        boolean vectorAvailable = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+        if(vectorAvailable && !"scalar".equals(System.getProperty("network.kernels"))){
+            try{
+                return (DenseKernels) Class.forName("com.network.VectorKernels").getDeclaredConstructor().newInstance();
+            }catch(ReflectiveOperationException | LinkageError e){
+                // Fall back to the scalar loops below.
+            }
+        }
+
+        return new ScalarKernels();
+    }
+}
@@ -0,0 +1,148 @@
+package com.network;
+
+import java.util.List;
+
+/**
+ * The result of scoring a labelled dataset with an {@link Evaluator}: the confusion matrix, the
+ * metrics derived from it and the misclassified samples the model was most confident about.
+ */
+public final class Evaluation {
+    private final int[][] confusion;
+    private final int count;
+    private final int correct;
+    private final List<Mistake> mistakes;
+    private final double seconds;
+
+    Evaluation(int[][] confusion, List<Mistake> mistakes, double seconds) {
+        this.confusion = confusion;
+        this.mistakes = List.copyOf(mistakes);
+        this.seconds = seconds;
+
+        int count = 0, correct = 0;
+        for(int label = 0; label < confusion.length; label++){
+            for(int prediction = 0; prediction < confusion.length; prediction++){
+                count += confusion[label][prediction];
+            }
+            correct += confusion[label][label];
+        }
+        this.count = count;
+        this.correct = correct;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public int getCorrect() {
+        return correct;
+    }
+
+    public double getAccuracy() {
+        return count == 0 ? Double.NaN : (double) correct / count;
+    }
+
+    public int getClassCount() {
+        return confusion.length;
+    }
+
+    /**
+     * The share of samples predicted as {@code digit} that really are one, or NaN if it was
+     * never predicted.
+     */
+    public double getPrecision(int digit) {
+        int predicted = 0;
+        for(int label = 0; label < confusion.length; label++) predicted += confusion[label][digit];
+
+        return predicted == 0 ? Double.NaN : (double) confusion[digit][digit] / predicted;
+    }
+
+    /**
+     * The share of samples labelled {@code digit} that were predicted as one, or NaN if there
+     * were none.
+     */
+    public double getRecall(int digit) {
+        int labelled = getLabelCount(digit);
+
+        return labelled == 0 ? Double.NaN : (double) confusion[digit][digit] / labelled;
+    }
+
+    public int getLabelCount(int digit) {
+        int labelled = 0;
+        for(int prediction = 0; prediction < confusion.length; prediction++) labelled += confusion[digit][prediction];
+
+        return labelled;
+    }
+
+    /**
+     * A copy of the confusion matrix, indexed {@code [label][prediction]}.
+     */
+    public int[][] getConfusionMatrix() {
+        int[][] copy = new int[confusion.length][];
+        for(int label = 0; label < confusion.length; label++) copy[label] = confusion[label].clone();
+
+        return copy;
+    }
+
+    /**
+     * The misclassified samples with the highest output for the wrong digit, most confident first.
+     */
+    public List<Mistake> getMostConfidentErrors() {
+        return mistakes;
+    }
+
+    /**
+     * Wall-clock time of the evaluation.
+     */
+    public double getSeconds() {
+        return seconds;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("accuracy %.2f%% (%d of %d) in %.3fs", 100 * getAccuracy(), correct, count, seconds);
+    }
+
+    /**
+     * One misclassified sample.
+     */
+    public static final class Mistake {
+        private final int index;
+        private final int label;
+        private final int prediction;
+        private final double confidence;
+
+        Mistake(int index, int label, int prediction, double confidence) {
+            this.index = index;
+            this.label = label;
+            this.prediction = prediction;
+            this.confidence = confidence;
+        }
+
+        /**
+         * Index of the sample in the dataset.
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        public int getLabel() {
+            return label;
+        }
+
+        public int getPrediction() {
+            return prediction;
+        }
+
+        /**
+         * The model's output for the predicted digit.
+         */
+        public double getConfidence() {
+            return confidence;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("sample %d: %d predicted as %d (%.4f)", index, label, prediction, confidence);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.network;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Scores a preloaded, labelled {@link Dataset} on several threads. Every thread scores a
+ * contiguous slice into its own confusion matrix and its own list of confident errors, which
+ * are merged at the end, so the workers share nothing while they run. A {@link NetworkModel} is
+ * scored in tiles through {@link NetworkModel#calculateBatch(double[], double[], int)}; other
+ * models one sample at a time.
+ * <p>
+ * For cheap validation during training, {@link #subsample} picks a fixed random set of indices
+ * once, and {@link #evaluate(InferenceModel, Dataset, int[])} scores only those.
+ */
+public class Evaluator implements AutoCloseable {
+    private static final int CHUNK = 256;
+    // Ascending, so the head of a queue is the error to drop first.
+    private static final Comparator<Evaluation.Mistake> LEAST_CONFIDENT_FIRST =
+            Comparator.comparingDouble(Evaluation.Mistake::getConfidence).thenComparing(Comparator.comparingInt(Evaluation.Mistake::getIndex).reversed());
+
+    private final int threads;
+    private final int topErrors;
+    private final ExecutorService pool;
+
+    /**
+     * @param topErrors how many of the most confident errors each result keeps
+     */
+    public Evaluator(int threads, int topErrors) {
+        if(threads < 1) throw new IllegalArgumentException("Thread count must be positive, but found " + threads);
+        if(topErrors < 0) throw new IllegalArgumentException("Error count must not be negative, but found " + topErrors);
+
+        this.threads = threads;
+        this.topErrors = topErrors;
+        this.pool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "evaluator-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * {@code count} distinct indices below {@code size}, drawn from {@code seed} and sorted, so
+     * the same seed always selects the same samples.
+     */
+    public static int[] subsample(int size, int count, long seed) {
+        if(count < 0 || count > size) throw new IllegalArgumentException("Cannot pick " + count + " of " + size + " samples");
+
+        int[] order = NetworkTools.createOrder(size);
+        Random random = new Random(seed);
+        for(int i = 0; i < count; i++){
+            int j = i + random.nextInt(size - i);
+            int tmp = order[i];
+            order[i] = order[j];
+            order[j] = tmp;
+        }
+
+        int[] picked = Arrays.copyOf(order, count);
+        Arrays.sort(picked);
+        return picked;
+    }
+
+    public Evaluation evaluate(InferenceModel model, Dataset data) throws NetworkException {
+        return evaluate(model, data, null);
+    }
+
+    /**
+     * Scores the samples at {@code indices}, or every sample if {@code indices} is null.
+     */
+    public Evaluation evaluate(InferenceModel model, Dataset data, int[] indices) throws NetworkException {
+        if(data.getInputSize() != model.getInputSize()) throw new NetworkException("Expected input size " + model.getInputSize() + ", but the dataset has " + data.getInputSize());
+
+        long start = System.nanoTime();
+        int count = indices == null ? data.size() : indices.length;
+        List<Callable<Partial>> tasks = new ArrayList<>(threads);
+        for(int worker = 0; worker < threads; worker++){
+            int from = (int) ((long) count * worker / threads);
+            int to = (int) ((long) count * (worker + 1) / threads);
+            if(from < to) tasks.add(() -> score(model, data, indices, from, to));
+        }
+
+        int classes = model.getOutputSize();
+        int[][] confusion = new int[classes][classes];
+        PriorityQueue<Evaluation.Mistake> mistakes = new PriorityQueue<>(LEAST_CONFIDENT_FIRST);
+        for(Partial partial : runAll(tasks)){
+            for(int label = 0; label < classes; label++){
+                for(int prediction = 0; prediction < classes; prediction++){
+                    confusion[label][prediction] += partial.confusion[label][prediction];
+                }
+            }
+            for(Evaluation.Mistake mistake : partial.mistakes) keep(mistakes, mistake);
+        }
+
+        List<Evaluation.Mistake> sorted = new ArrayList<>(mistakes);
+        sorted.sort(LEAST_CONFIDENT_FIRST.reversed());
+        return new Evaluation(confusion, sorted, (System.nanoTime() - start) / 1e9);
+    }
+
+    private Partial score(InferenceModel model, Dataset data, int[] indices, int from, int to) throws NetworkException {
+        int inputSize = model.getInputSize();
+        int outputSize = model.getOutputSize();
+        Partial partial = new Partial(outputSize);
+        NetworkModel batchModel = model instanceof NetworkModel ? (NetworkModel) model : null;
+
+        int chunk = batchModel != null ? CHUNK : 1;
+        double[] sample = new double[inputSize];
+        double[] inputs = new double[chunk * inputSize];
+        double[] outputs = new double[chunk * outputSize];
+        for(int start = from; start < to; start += chunk){
+            int size = Math.min(chunk, to - start);
+            if(batchModel != null){
+                for(int i = 0; i < size; i++){
+                    data.copyInput(index(indices, start + i), sample);
+                    System.arraycopy(sample, 0, inputs, i * inputSize, inputSize);
+                }
+                batchModel.calculateBatch(inputs, outputs, size);
+            }else{
+                data.copyInput(index(indices, start), sample);
+                model.calculate(sample, outputs);
+            }
+
+            for(int i = 0; i < size; i++){
+                int index = index(indices, start + i);
+                int label = data.getLabel(index);
+                if(label < 0 || label >= outputSize) throw new NetworkException("Label " + label + " of sample " + index + " is not one of the " + outputSize + " outputs");
+
+                int offset = i * outputSize;
+                int prediction = 0;
+                for(int j = 1; j < outputSize; j++){
+                    if(outputs[offset + j] > outputs[offset + prediction]) prediction = j;
+                }
+
+                partial.confusion[label][prediction]++;
+                if(prediction != label && topErrors > 0){
+                    keep(partial.mistakes, new Evaluation.Mistake(index, label, prediction, outputs[offset + prediction]));
+                }
+            }
+        }
+
+        return partial;
+    }
+
+    private void keep(PriorityQueue<Evaluation.Mistake> mistakes, Evaluation.Mistake mistake) {
+        if(mistakes.size() < topErrors){
+            mistakes.add(mistake);
+        }else if(topErrors > 0 && LEAST_CONFIDENT_FIRST.compare(mistake, mistakes.peek()) > 0){
+            mistakes.poll();
+            mistakes.add(mistake);
+        }
+    }
+
+    private static int index(int[] indices, int position) {
+        return indices == null ? position : indices[position];
+    }
+
+    private List<Partial> runAll(List<Callable<Partial>> tasks) throws NetworkException {
+        try{
+            List<Partial> partials = new ArrayList<>(tasks.size());
+            for(Future<Partial> future : pool.invokeAll(tasks)){
+                partials.add(future.get());
+            }
+            return partials;
+        }catch(ExecutionException e){
+            if(e.getCause() instanceof NetworkException) throw (NetworkException) e.getCause();
+            throw new NetworkException("Evaluation worker failed", e.getCause());
+        }catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new NetworkException("Evaluation interrupted", e);
+        }
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+
+    private static final class Partial {
+        private final int[][] confusion;
+        private final PriorityQueue<Evaluation.Mistake> mistakes = new PriorityQueue<>(LEAST_CONFIDENT_FIRST);
+
+        private Partial(int classes) {
+            this.confusion = new int[classes][classes];
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.network;
+
+/**
+ * Single-precision copy of a {@link NetworkModel}. Weights take half the memory and half the
+ * bandwidth of the double model, at the cost of float rounding in every sum.
+ */
+public final class FloatNetworkModel implements InferenceModel {
+    private final int[] NETWORK_LAYER_SIZES;
+    private final int NETWORK_SIZE;
+    private final int INPUT_SIZE;
+    private final int OUTPUT_SIZE;
+    private final float[][] weights;
+    private final float[][] biases;
+    private final Activation[] activations;
+    private final ThreadLocal<float[][]> workspaces = ThreadLocal.withInitial(this::newOutputs);
+
+    FloatNetworkModel(int[] NETWORK_LAYER_SIZES, double[][] weights, double[][] biases, Activation[] activations) {
+        this.NETWORK_LAYER_SIZES = NETWORK_LAYER_SIZES.clone();
+        this.NETWORK_SIZE = NETWORK_LAYER_SIZES.length;
+        this.INPUT_SIZE = NETWORK_LAYER_SIZES[0];
+        this.OUTPUT_SIZE = NETWORK_LAYER_SIZES[NETWORK_SIZE - 1];
+
+        this.weights = new float[NETWORK_SIZE][];
+        this.biases = new float[NETWORK_SIZE][];
+        for(int layer = 1; layer < NETWORK_SIZE; layer++){
+            this.weights[layer] = toFloats(weights[layer]);
+            this.biases[layer] = toFloats(biases[layer]);
+        }
+        this.activations = activations.clone();
+    }
+
+    public void calculate(float[] input, float[] output) throws NetworkException {
+        if(input.length != INPUT_SIZE) throw new NetworkException("Expected input size " + INPUT_SIZE + ", but found " + input.length);
+        if(output.length != OUTPUT_SIZE) throw new NetworkException("Expected output size " + OUTPUT_SIZE + ", but found " + output.length);
+
+        float[][] outputs = workspaces.get();
+        System.arraycopy(input, 0, outputs[0], 0, INPUT_SIZE);
+        feedForward(outputs);
+        System.arraycopy(outputs[NETWORK_SIZE - 1], 0, output, 0, OUTPUT_SIZE);
+    }
+
+    @Override
+    public void calculate(double[] input, double[] output) throws NetworkException {
+        if(output.length != OUTPUT_SIZE) throw new NetworkException("Expected output size " + OUTPUT_SIZE + ", but found " + output.length);
+
+        float[] result = calculate(input);
+        for(int i = 0; i < OUTPUT_SIZE; i++){
+            output[i] = result[i];
+        }
+    }
+
+    @Override
+    public int predict(double[] input) throws NetworkException {
+        float[] output = calculate(input);
+
+        int guess = 0;
+        for(int i = 1; i < OUTPUT_SIZE; i++){
+            if(output[i] > output[guess]) guess = i;
+        }
+
+        return guess;
+    }
+
+    private float[] calculate(double[] input) throws NetworkException {
+        if(input.length != INPUT_SIZE) throw new NetworkException("Expected input size " + INPUT_SIZE + ", but found " + input.length);
+
+        float[][] outputs = workspaces.get();
+        for(int i = 0; i < INPUT_SIZE; i++){
+            outputs[0][i] = (float) input[i];
+        }
+        feedForward(outputs);
+
+        return outputs[NETWORK_SIZE - 1];
+    }
+
+    private void feedForward(float[][] outputs) {
+        long start = NetworkMetrics.ENABLED ? System.nanoTime() : 0;
+        for(int layer = 1; layer < NETWORK_SIZE; layer++){
+            int neurons = NETWORK_LAYER_SIZES[layer];
+            float[] layerWeights = weights[layer];
+            float[] prevOutputs = outputs[layer - 1];
+            float[] sums = outputs[layer];
+
+            System.arraycopy(biases[layer], 0, sums, 0, neurons);
+            for(int prevNeuron = 0; prevNeuron < NETWORK_LAYER_SIZES[layer - 1]; prevNeuron++){
+                float prevOutput = prevOutputs[prevNeuron];
+                if(prevOutput == 0) continue;
+
+                DenseKernels.INSTANCE.axpy(prevOutput, layerWeights, prevNeuron * neurons, sums, 0, neurons);
+            }
+
+            activations[layer].apply(sums, 0, neurons);
+
+            if(NetworkMetrics.ENABLED){
+                long now = System.nanoTime();
+                NetworkMetrics.INSTANCE.recordForward(layer, now - start);
+                start = now;
+            }
+        }
+    }
+
+    private float[][] newOutputs() {
+        float[][] outputs = new float[NETWORK_SIZE][];
+        for(int layer = 0; layer < NETWORK_SIZE; layer++){
+            outputs[layer] = new float[NETWORK_LAYER_SIZES[layer]];
+        }
+
+        return outputs;
+    }
+
+    private static float[] toFloats(double[] values) {
+        float[] res = new float[values.length];
+        for(int i = 0; i < values.length; i++){
+            res[i] = (float) values[i];
+        }
+
+        return res;
+    }
+
+    @Override
+    public int getInputSize() {
+        return INPUT_SIZE;
+    }
+
+    @Override
+    public int getOutputSize() {
+        return OUTPUT_SIZE;
+    }
+}
@@ -0,0 +1,54 @@
+package com.network;
+
+import java.util.Arrays;
+
+/**
+ * Activations, error signals and summed gradients of the samples seen since the last
+ * weight update. Every thread that computes gradients needs its own buffer.
+ */
+final class GradientBuffer {
+    final double[][] outputs;
+    final double[][] errorSignals;
+    final double[][] weightGradients;
+    final double[][] biasGradients;
+    int samples;
+
+    GradientBuffer(int[] NETWORK_LAYER_SIZES) {
+        int NETWORK_SIZE = NETWORK_LAYER_SIZES.length;
+        outputs = new double[NETWORK_SIZE][];
+        errorSignals = new double[NETWORK_SIZE][];
+        weightGradients = new double[NETWORK_SIZE][];
+        biasGradients = new double[NETWORK_SIZE][];
+        for(int layer = 0; layer < NETWORK_SIZE; layer++){
+            outputs[layer] = new double[NETWORK_LAYER_SIZES[layer]];
+
+            if(layer == 0) continue;
+
+            errorSignals[layer] = new double[NETWORK_LAYER_SIZES[layer]];
+            weightGradients[layer] = new double[NETWORK_LAYER_SIZES[layer - 1] * NETWORK_LAYER_SIZES[layer]];
+            biasGradients[layer] = new double[NETWORK_LAYER_SIZES[layer]];
+        }
+    }
+
+    void add(GradientBuffer other) {
+        for(int layer = 1; layer < weightGradients.length; layer++){
+            double[] gradients = weightGradients[layer];
+            DenseKernels.INSTANCE.axpy(1d, other.weightGradients[layer], 0, gradients, 0, gradients.length);
+
+            for(int i = 0; i < biasGradients[layer].length; i++){
+                biasGradients[layer][i] += other.biasGradients[layer][i];
+            }
+        }
+
+        samples += other.samples;
+    }
+
+    void clear() {
+        for(int layer = 1; layer < weightGradients.length; layer++){
+            Arrays.fill(weightGradients[layer], 0d);
+            Arrays.fill(biasGradients[layer], 0d);
+        }
+
+        samples = 0;
+    }
+}
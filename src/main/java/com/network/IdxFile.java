@@ -0,0 +1,207 @@
+package com.network;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Memory-mapped view of an IDX file with unsigned byte data, the format of the MNIST images
+ * and labels. The first dimension counts samples, the remaining ones make up one sample.
+ * Pixels stay as bytes in the page cache and are normalized to [0, 1] only when a sample is
+ * copied out, so files larger than the heap can be read. All accessors are thread-safe.
+ */
+public final class IdxFile implements Iterable<double[]> {
+    private static final int UNSIGNED_BYTE = 0x08;
+    private static final double[] NORMALIZED = new double[256];
+    static {
+        for(int i = 0; i < 256; i++){
+            NORMALIZED[i] = (double) i / 255;
+        }
+    }
+
+    private final int[] dimensions;
+    private final int count;
+    private final int sampleSize;
+    private final int samplesPerChunk;
+    private final MappedByteBuffer[] chunks;
+
+    public IdxFile(String path) throws IOException {
+        try(FileChannel channel = FileChannel.open(Path.of(path), StandardOpenOption.READ)){
+            ByteBuffer header = ByteBuffer.allocate(4).order(ByteOrder.BIG_ENDIAN);
+            readFully(channel, header, path);
+            int magic = header.getInt(0);
+            if((magic >>> 16) != 0) throw new IOException("Bad magic number " + Integer.toHexString(magic) + " in " + path);
+            if(((magic >>> 8) & 0xff) != UNSIGNED_BYTE) throw new IOException("Unsupported IDX data type " + ((magic >>> 8) & 0xff) + " in " + path);
+
+            int dimensionCount = magic & 0xff;
+            if(dimensionCount < 1) throw new IOException("IDX file without dimensions: " + path);
+
+            ByteBuffer sizes = ByteBuffer.allocate(dimensionCount * Integer.BYTES).order(ByteOrder.BIG_ENDIAN);
+            readFully(channel, sizes, path);
+            dimensions = new int[dimensionCount];
+            long size = 1;
+            for(int i = 0; i < dimensionCount; i++){
+                dimensions[i] = sizes.getInt(i * Integer.BYTES);
+                if(dimensions[i] < 0) throw new IOException("Negative IDX dimension " + dimensions[i] + " in " + path);
+                if(i > 0) size *= dimensions[i];
+            }
+            if(size > Integer.MAX_VALUE) throw new IOException("IDX sample too large in " + path);
+
+            count = dimensions[0];
+            sampleSize = (int) size;
+
+            long dataOffset = 4L + dimensionCount * Integer.BYTES;
+            long expected = dataOffset + (long) count * sampleSize;
+            if(channel.size() < expected) throw new IOException("Truncated IDX file " + path + ". Expected " + expected + " bytes, but found " + channel.size());
+
+            // A single mapping is limited to 2 GB, so large files are mapped in chunks of whole samples.
+            samplesPerChunk = Math.max(1, Integer.MAX_VALUE / Math.max(1, sampleSize));
+            int chunkCount = count == 0 ? 0 : (count - 1) / samplesPerChunk + 1;
+            chunks = new MappedByteBuffer[chunkCount];
+            for(int chunk = 0; chunk < chunkCount; chunk++){
+                long first = (long) chunk * samplesPerChunk;
+                long samples = Math.min(samplesPerChunk, count - first);
+                chunks[chunk] = channel.map(FileChannel.MapMode.READ_ONLY, dataOffset + first * sampleSize, samples * sampleSize);
+            }
+        }
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public int getSampleSize() {
+        return sampleSize;
+    }
+
+    public int[] getDimensions() {
+        return dimensions.clone();
+    }
+
+    public int getUnsigned(int sample, int index) {
+        return chunks[sample / samplesPerChunk].get((sample % samplesPerChunk) * sampleSize + index) & 0xff;
+    }
+
+    /**
+     * Copies one sample into {@code dest}, normalized to [0, 1] like {@link MnistReader#loadImages}.
+     */
+    public void copySample(int sample, double[] dest) {
+        checkSample(sample, dest.length);
+
+        ByteBuffer chunk = chunks[sample / samplesPerChunk];
+        int offset = (sample % samplesPerChunk) * sampleSize;
+        for(int i = 0; i < sampleSize; i++){
+            dest[i] = NORMALIZED[chunk.get(offset + i) & 0xff];
+        }
+    }
+
+    public void copySample(int sample, float[] dest) {
+        checkSample(sample, dest.length);
+
+        ByteBuffer chunk = chunks[sample / samplesPerChunk];
+        int offset = (sample % samplesPerChunk) * sampleSize;
+        for(int i = 0; i < sampleSize; i++){
+            dest[i] = (float) NORMALIZED[chunk.get(offset + i) & 0xff];
+        }
+    }
+
+    public void copyRaw(int sample, byte[] dest) {
+        checkSample(sample, dest.length);
+
+        chunks[sample / samplesPerChunk].get((sample % samplesPerChunk) * sampleSize, dest, 0, sampleSize);
+    }
+
+    @Override
+    public Iterator<double[]> iterator() {
+        return new Iterator<>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < count;
+            }
+
+            @Override
+            public double[] next() {
+                if(next >= count) throw new NoSuchElementException();
+
+                double[] sample = new double[sampleSize];
+                copySample(next++, sample);
+                return sample;
+            }
+        };
+    }
+
+    @Override
+    public Spliterator<double[]> spliterator() {
+        return new SampleSpliterator(0, count);
+    }
+
+    /**
+     * Lazily decodes samples one by one; a parallel stream splits the file by sample ranges.
+     */
+    public Stream<double[]> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    private void checkSample(int sample, int destLength) {
+        if(sample < 0 || sample >= count) throw new IndexOutOfBoundsException("Sample " + sample + " out of range [0, " + count + ")");
+        if(destLength < sampleSize) throw new IllegalArgumentException("Expected buffer of at least " + sampleSize + " values, but found " + destLength);
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, String path) throws IOException {
+        while(buffer.hasRemaining()){
+            if(channel.read(buffer) < 0) throw new IOException("Truncated IDX header in " + path);
+        }
+    }
+
+    private final class SampleSpliterator implements Spliterator<double[]> {
+        private int from;
+        private final int to;
+
+        SampleSpliterator(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super double[]> action) {
+            if(from >= to) return false;
+
+            double[] sample = new double[sampleSize];
+            copySample(from++, sample);
+            action.accept(sample);
+            return true;
+        }
+
+        @Override
+        public Spliterator<double[]> trySplit() {
+            int middle = (from + to) >>> 1;
+            if(middle <= from) return null;
+
+            SampleSpliterator prefix = new SampleSpliterator(from, middle);
+            from = middle;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return to - from;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | SIZED | SUBSIZED | NONNULL | IMMUTABLE;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.network;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+/**
+ * Converts decoded images into network input: gray values, area-scaled to a square input with
+ * {@link ImageResampler} and normalized to [0, 1] like the IDX pixels. {@code invert} is for
+ * dark digits on a light background. {@code centered} crops the digit and centers it by its
+ * center of mass in a 20/28 box like the MNIST images, see {@link ImageResampler#normalizeDigit};
+ * otherwise the whole image is scaled. Buffers are reused between calls, so an instance must
+ * only be used by one thread at a time.
+ */
+public final class ImageDecoder {
+    private static final float BOX_FRACTION = 20f / 28;
+    private static final double CENTERING_THRESHOLD = 0.1 * 255;
+    private final int side;
+    private final boolean invert;
+    private final boolean centered;
+    private int[] samples = new int[0];
+    private double[] gray = new double[0];
+
+    public ImageDecoder(int side, boolean invert) {
+        this(side, invert, false);
+    }
+
+    public ImageDecoder(int side, boolean invert, boolean centered) {
+        this.side = side;
+        this.invert = invert;
+        this.centered = centered;
+    }
+
+    public void decode(byte[] encoded, double[] input) throws IOException {
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(encoded));
+        if(image == null) throw new IOException("Not a readable image");
+
+        decode(image, input);
+    }
+
+    public void decode(BufferedImage image, double[] input) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        if(samples.length < width * height){
+            samples = new int[width * height];
+            gray = new double[width * height];
+        }
+        double[] values = width == side && height == side && !centered ? input : gray;
+
+        // getRGB would map gray images through sRGB gamma, so their raw samples are read instead.
+        if(image.getType() == BufferedImage.TYPE_BYTE_GRAY){
+            image.getRaster().getSamples(0, 0, width, height, 0, samples);
+            for(int i = 0; i < width * height; i++){
+                values[i] = invert ? 255 - samples[i] : samples[i];
+            }
+        }else{
+            image.getRGB(0, 0, width, height, samples, 0, width);
+            for(int i = 0; i < width * height; i++){
+                int pixel = samples[i];
+                int alpha = pixel >>> 24;
+                double luminance = 0.299 * ((pixel >> 16) & 0xff) + 0.587 * ((pixel >> 8) & 0xff) + 0.114 * (pixel & 0xff);
+                double value = luminance * alpha / 255;
+                values[i] = invert ? alpha - value : value;
+            }
+        }
+
+        if(centered){
+            // Faint background noise of scans would otherwise widen the bounding box.
+            ImageResampler.normalizeDigit(values, height, width, input, side, Math.round(side * BOX_FRACTION), CENTERING_THRESHOLD);
+        }else if(values != input){
+            ImageResampler.rescale(values, height, width, input, side, side);
+        }
+        for(int i = 0; i < side * side; i++){
+            input[i] /= 255;
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package com.network;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+/**
+ * Area-averaging image resampler without any UI dependencies, shared by the GUI and the
+ * command-line tools. Every target pixel is the mean of the source pixels it covers, each
+ * weighted by the covered fraction, capped at 255. {@link #normalizeDigit} additionally crops
+ * and centers a digit like the MNIST training images.
+ */
+public final class ImageResampler {
+    public static final int PARALLEL_PIXELS = 1 << 18;
+    private static final int PARALLELISM = Runtime.getRuntime().availableProcessors();
+    private static final int MAX_TABLES = 256;
+    private static final Map<Long, AreaTable> TABLES = new ConcurrentHashMap<>();
+    private static final ThreadLocal<double[]> SCRATCH = ThreadLocal.withInitial(() -> new double[0]);
+
+    private ImageResampler() {
+    }
+
+    public static double[][] rescale(double[][] origImage, int newHeight, int newWidth) {
+        int origHeight = origImage.length;
+        int origWidth = origImage[0].length;
+        AreaTable columns = table(origWidth, newWidth);
+        AreaTable rows = table(origHeight, newHeight);
+
+        // The rows are averaged straight out of the nested arrays, so the source is never copied.
+        double[] rowSums = scratch(origHeight * newWidth);
+        double[] target = new double[newHeight * newWidth];
+        boolean parallel = (long) origHeight * origWidth >= PARALLEL_PIXELS && PARALLELISM > 1;
+        forBands(origHeight, parallel, (from, to) -> {
+            for(int row = from; row < to; row++) averageRow(origImage[row], 0, rowSums, row * newWidth, newWidth, columns);
+        });
+        forBands(newHeight, parallel, (from, to) -> averageColumns(rowSums, target, newWidth, rows, columns, from, to));
+
+        double[][] newImage = new double[newHeight][newWidth];
+        for(int row = 0; row < newHeight; row++){
+            System.arraycopy(target, row * newWidth, newImage[row], 0, newWidth);
+        }
+
+        return newImage;
+    }
+
+    /**
+     * Flat variant of {@link #rescale(double[][], int, int)} over row-major images, writing
+     * into {@code dest}. Area averaging is separable, so the image is first averaged along
+     * each row into an intermediate of {@code origHeight x newWidth} and then along each
+     * column. The overlap weights come from tables cached per (source size, target size)
+     * pair. Images of at least {@code PARALLEL_PIXELS} pixels are split into bands of rows
+     * that run in parallel.
+     */
+    public static void rescale(double[] source, int origHeight, int origWidth, double[] dest, int newHeight, int newWidth) {
+        AreaTable columns = table(origWidth, newWidth);
+        AreaTable rows = table(origHeight, newHeight);
+
+        double[] rowSums = scratch(origHeight * newWidth);
+        boolean parallel = (long) origHeight * origWidth >= PARALLEL_PIXELS && PARALLELISM > 1;
+        forBands(origHeight, parallel, (from, to) -> {
+            for(int row = from; row < to; row++) averageRow(source, row * origWidth, rowSums, row * newWidth, newWidth, columns);
+        });
+        forBands(newHeight, parallel, (from, to) -> averageColumns(rowSums, dest, newWidth, rows, columns, from, to));
+    }
+
+    /**
+     * Normalizes a digit the way MNIST was built: crops {@code source} to the bounding box of
+     * the pixels above {@code threshold}, scales the box to fit into {@code boxSize x boxSize}
+     * keeping its aspect ratio, and places it on a cleared {@code side x side} image in
+     * {@code dest} so that its center of mass is as close to the center as the borders allow.
+     * Returns false and leaves {@code dest} cleared if no pixel is above the threshold.
+     */
+    public static boolean normalizeDigit(double[] source, int height, int width, double[] dest, int side, int boxSize, double threshold) {
+        if(boxSize > side) throw new IllegalArgumentException("Box size " + boxSize + " does not fit into " + side);
+        Arrays.fill(dest, 0, side * side, 0);
+
+        int top = height, bottom = -1, left = width, right = -1;
+        for(int row = 0; row < height; row++){
+            for(int col = 0; col < width; col++){
+                if(source[row * width + col] > threshold){
+                    top = Math.min(top, row);
+                    bottom = Math.max(bottom, row);
+                    left = Math.min(left, col);
+                    right = Math.max(right, col);
+                }
+            }
+        }
+        if(bottom < 0) return false;
+
+        int boxHeight = bottom - top + 1;
+        int boxWidth = right - left + 1;
+        double[] cropped = new double[boxHeight * boxWidth];
+        for(int row = 0; row < boxHeight; row++){
+            System.arraycopy(source, (top + row) * width + left, cropped, row * boxWidth, boxWidth);
+        }
+
+        double scale = (double) boxSize / Math.max(boxHeight, boxWidth);
+        int scaledHeight = Math.max(1, (int) Math.round(boxHeight * scale));
+        int scaledWidth = Math.max(1, (int) Math.round(boxWidth * scale));
+        double[] scaled = new double[scaledHeight * scaledWidth];
+        rescale(cropped, boxHeight, boxWidth, scaled, scaledHeight, scaledWidth);
+
+        // Center of mass in pixel-center coordinates of the scaled box.
+        double mass = 0, rowMoment = 0, colMoment = 0;
+        for(int row = 0; row < scaledHeight; row++){
+            for(int col = 0; col < scaledWidth; col++){
+                double value = scaled[row * scaledWidth + col];
+                mass += value;
+                rowMoment += value * (row + 0.5);
+                colMoment += value * (col + 0.5);
+            }
+        }
+        double centerRow = mass > 0 ? rowMoment / mass : scaledHeight / 2.0;
+        double centerCol = mass > 0 ? colMoment / mass : scaledWidth / 2.0;
+
+        int offsetRow = Math.max(0, Math.min(side - scaledHeight, (int) Math.round(side / 2.0 - centerRow)));
+        int offsetCol = Math.max(0, Math.min(side - scaledWidth, (int) Math.round(side / 2.0 - centerCol)));
+        for(int row = 0; row < scaledHeight; row++){
+            System.arraycopy(scaled, row * scaledWidth, dest, (offsetRow + row) * side + offsetCol, scaledWidth);
+        }
+
+        return true;
+    }
+
+    // Sums of a source row over the columns covered by every target column, not yet divided by the area.
+    private static void averageRow(double[] source, int sourceOffset, double[] rowSums, int targetOffset, int newWidth, AreaTable columns) {
+        for(int col = 0; col < newWidth; col++){
+            double[] weights = columns.weights[col];
+            int first = sourceOffset + columns.first[col];
+
+            double sum = 0;
+            for(int i = 0; i < weights.length; i++){
+                sum += source[first + i] * weights[i];
+            }
+            rowSums[targetOffset + col] = sum;
+        }
+    }
+
+    private static void averageColumns(double[] rowSums, double[] dest, int newWidth, AreaTable rows, AreaTable columns, int from, int to) {
+        for(int row = from; row < to; row++){
+            int targetOffset = row * newWidth;
+            double[] weights = rows.weights[row];
+            int first = rows.first[row];
+
+            // Whole intermediate rows are added at once, so every read is sequential.
+            Arrays.fill(dest, targetOffset, targetOffset + newWidth, 0);
+            for(int i = 0; i < weights.length; i++){
+                double weight = weights[i];
+                int sourceOffset = (first + i) * newWidth;
+                for(int col = 0; col < newWidth; col++){
+                    dest[targetOffset + col] += rowSums[sourceOffset + col] * weight;
+                }
+            }
+
+            double rowArea = rows.areas[row];
+            for(int col = 0; col < newWidth; col++){
+                dest[targetOffset + col] = Math.min(255, dest[targetOffset + col] / (rowArea * columns.areas[col]));
+            }
+        }
+    }
+
+    private static void forBands(int rows, boolean parallel, Band band) {
+        if(!parallel){
+            band.run(0, rows);
+            return;
+        }
+
+        int bands = Math.min(rows, PARALLELISM * 4);
+        IntStream.range(0, bands).parallel().forEach(i -> band.run((int) ((long) rows * i / bands), (int) ((long) rows * (i + 1) / bands)));
+    }
+
+    private static double[] scratch(int size) {
+        double[] buffer = SCRATCH.get();
+        if(buffer.length < size){
+            buffer = new double[size];
+            SCRATCH.set(buffer);
+        }
+
+        return buffer;
+    }
+
+    private static AreaTable table(int sourceSize, int targetSize) {
+        long key = (long) sourceSize << 32 | targetSize;
+        AreaTable table = TABLES.get(key);
+        if(table == null){
+            // Tables are small, but image sizes are arbitrary; start over instead of growing forever.
+            if(TABLES.size() >= MAX_TABLES) TABLES.clear();
+            table = new AreaTable(sourceSize, targetSize);
+            TABLES.put(key, table);
+        }
+
+        return table;
+    }
+
+    private interface Band {
+        void run(int from, int to);
+    }
+
+    /**
+     * For every target pixel along one axis: the first covered source pixel, the covered
+     * fraction of each covered source pixel, and their sum. A target border that falls exactly
+     * on the end of the source adds no pixel, like the bounds check of the original loop.
+     */
+    private static final class AreaTable {
+        private final int[] first;
+        private final double[][] weights;
+        private final double[] areas;
+
+        private AreaTable(int sourceSize, int targetSize) {
+            first = new int[targetSize];
+            weights = new double[targetSize][];
+            areas = new double[targetSize];
+
+            double scale = (double) sourceSize / targetSize;
+            for(int target = 0; target < targetSize; target++){
+                double lower = target * scale;
+                double upper = (target + 1) * scale;
+                int min = (int) lower;
+                int max = Math.min((int) upper, sourceSize - 1);
+
+                first[target] = min;
+                weights[target] = new double[max - min + 1];
+                for(int source = min; source <= max; source++){
+                    double overlap = Math.min(upper, source + 1) - Math.max(lower, source);
+                    weights[target][source - min] = overlap;
+                    areas[target] += overlap;
+                }
+            }
+        }
+    }
+}
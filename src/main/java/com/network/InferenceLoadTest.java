@@ -0,0 +1,136 @@
+package com.network;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Closed-loop load test of {@link InferenceServer} on localhost. Starts a server on a free
+ * port (or targets {@code --url}), lets {@code --clients} threads post pixel arrays back to
+ * back for {@code --seconds}, and prints client-side requests per second and latency
+ * percentiles followed by the server's own metrics. Inputs come from {@code --idx} or are
+ * random sparse images; the same 256 inputs are posted over and over, so {@code --cache}
+ * shows the effect of a {@link PredictionCache} on repeated inputs.
+ * Usage: {@code InferenceLoadTest [--model path] [--url http://host:port] [--clients 16] [--seconds 10]
+ * [--idx images] [--max-batch 32] [--max-delay 2] [--cache 0]}
+ */
+public class InferenceLoadTest {
+    private static final int INPUTS = 256;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String modelPath = Path.of("src", "main", "resources", "com", "networks", "network.bin").toString();
+        String url = null, idxPath = null;
+        int clients = 16, seconds = 10, maxBatch = 32, cacheSize = 0;
+        double maxDelay = 2;
+
+        for(int i = 0; i < args.length; i++){
+            switch(args[i]){
+                case "--model" -> modelPath = args[++i];
+                case "--url" -> url = args[++i];
+                case "--clients" -> clients = Integer.parseInt(args[++i]);
+                case "--seconds" -> seconds = Integer.parseInt(args[++i]);
+                case "--idx" -> idxPath = args[++i];
+                case "--max-batch" -> maxBatch = Integer.parseInt(args[++i]);
+                case "--max-delay" -> maxDelay = Double.parseDouble(args[++i]);
+                case "--cache" -> cacheSize = Integer.parseInt(args[++i]);
+                default -> {
+                    System.err.println("Usage: InferenceLoadTest [--model path] [--url base] [--clients n] [--seconds n] [--idx images] [--max-batch n] [--max-delay ms] [--cache n]");
+                    System.exit(1);
+                }
+            }
+        }
+
+        InferenceServer server = null;
+        NetworkModel model = NetworkModel.load(modelPath);
+        if(url == null){
+            server = new InferenceServer(model, 0, maxBatch, maxDelay, clients + 4, cacheSize);
+            url = "http://localhost:" + server.getPort();
+        }
+
+        try{
+            run(url, createBodies(idxPath, model.getInputSize()), clients, seconds);
+        }finally{
+            if(server != null) server.close();
+        }
+    }
+
+    private static String[] createBodies(String idxPath, int inputSize) throws IOException {
+        String[] bodies = new String[INPUTS];
+        double[] input = new double[inputSize];
+        IdxFile images = idxPath == null ? null : new IdxFile(idxPath);
+        Random random = new Random(42);
+
+        for(int i = 0; i < INPUTS; i++){
+            if(images != null){
+                images.copySample(i % images.size(), input);
+            }else{
+                for(int j = 0; j < inputSize; j++) input[j] = random.nextInt(8) == 0 ? random.nextDouble() : 0;
+            }
+
+            StringBuilder body = new StringBuilder();
+            for(int j = 0; j < inputSize; j++){
+                if(j > 0) body.append(',');
+                body.append((float) input[j]);
+            }
+            bodies[i] = body.toString();
+        }
+
+        return bodies;
+    }
+
+    private static void run(String url, String[] bodies, int clients, int seconds) throws IOException, InterruptedException {
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        URI predict = URI.create(url + "/predict");
+        AtomicBoolean running = new AtomicBoolean(true);
+        LatencyHistogram latencies = new LatencyHistogram();
+        int[] failures = new int[clients];
+
+        List<Thread> threads = new ArrayList<>();
+        for(int c = 0; c < clients; c++){
+            int id = c;
+            Thread thread = new Thread(() -> {
+                for(int i = id; running.get(); i++){
+                    HttpRequest request = HttpRequest.newBuilder(predict).POST(HttpRequest.BodyPublishers.ofString(bodies[i % bodies.length])).build();
+                    long start = System.nanoTime();
+                    try{
+                        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                        if(response.statusCode() != 200){
+                            failures[id]++;
+                            continue;
+                        }
+                    }catch(IOException e){
+                        failures[id]++;
+                        continue;
+                    }catch(InterruptedException e){
+                        break;
+                    }
+
+                    latencies.record(System.nanoTime() - start);
+                }
+            }, "load-client-" + c);
+            thread.start();
+            threads.add(thread);
+        }
+
+        long start = System.nanoTime();
+        Thread.sleep(seconds * 1000L);
+        running.set(false);
+        for(Thread thread : threads) thread.join();
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        long total = latencies.getCount();
+
+        System.out.printf("%d clients, %d requests in %.1fs: %.0f requests/s, %d failures%n", clients, total, elapsed, total / elapsed, Arrays.stream(failures).sum());
+        System.out.printf("client latency p50 %.3fms, p99 %.3fms, p99.9 %.3fms, max %.3fms%n", latencies.getPercentile(50) / 1e6, latencies.getPercentile(99) / 1e6, latencies.getPercentile(99.9) / 1e6, latencies.getMax() / 1e6);
+
+        HttpResponse<String> metrics = client.send(HttpRequest.newBuilder(URI.create(url + "/metrics")).build(), HttpResponse.BodyHandlers.ofString());
+        System.out.print("server metrics:\n" + metrics.body());
+    }
+}
@@ -0,0 +1,24 @@
+package com.network;
+
+/**
+ * Read-only, thread-safe scoring of single inputs. Implementations keep their scratch buffers
+ * per thread, so neither method allocates.
+ */
+public interface InferenceModel {
+    int getInputSize();
+
+    int getOutputSize();
+
+    void calculate(double[] input, double[] output) throws NetworkException;
+
+    int predict(double[] input) throws NetworkException;
+
+    static int argMax(double[] values) {
+        int max = 0;
+        for(int i = 1; i < values.length; i++){
+            if(values[i] > values[max]) max = i;
+        }
+
+        return max;
+    }
+}
@@ -0,0 +1,268 @@
+package com.network;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Local HTTP inference service on the JDK's built-in server.
+ * <ul>
+ *   <li>{@code POST /predict} takes PNG bytes or {@code INPUT_SIZE} pixel values as text
+ *   (a JSON array or values separated by commas or whitespace) and answers
+ *   {@code {"prediction":7,"probabilities":[...]}}. Text values are read as given, in
+ *   [0, 1]; {@code POST /predict?scale=255} divides them by 255 first.</li>
+ *   <li>{@code GET /metrics} reports request counts, requests per second, latency
+ *   percentiles and batch statistics as plain text.</li>
+ * </ul>
+ * Requests are scored through a {@link MicroBatcher}, so concurrent requests share one
+ * batched forward pass. With {@code --cache n} the outputs of the last {@code n} distinct
+ * inputs are kept in a {@link PredictionCache}, and repeated inputs skip the batcher. Usage:
+ * {@code InferenceServer [--model path] [--port 8080] [--max-batch 32] [--max-delay 2] [--threads 64] [--cache 0]}
+ */
+public class InferenceServer implements AutoCloseable {
+    private static final long REQUEST_TIMEOUT_SECONDS = 10;
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G'};
+
+    private final NetworkModel model;
+    private final MicroBatcher batcher;
+    private final PredictionCache cache;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ThreadLocal<ImageDecoder> decoders;
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private final RecentRequests recent = new RecentRequests(1 << 14);
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final long startNanos = System.nanoTime();
+
+    /**
+     * Starts serving on the loopback interface. Port 0 picks a free port, see {@link #getPort()}.
+     */
+    public InferenceServer(NetworkModel model, int port, int maxBatchSize, double maxDelayMillis, int threads) throws IOException {
+        this(model, port, maxBatchSize, maxDelayMillis, threads, 0);
+    }
+
+    /**
+     * Like {@link #InferenceServer(NetworkModel, int, int, double, int)}, with a cache of
+     * {@code cacheSize} outputs; 0 disables it.
+     */
+    public InferenceServer(NetworkModel model, int port, int maxBatchSize, double maxDelayMillis, int threads, int cacheSize) throws IOException {
+        int side = (int) Math.round(Math.sqrt(model.getInputSize()));
+
+        this.model = model;
+        this.batcher = new MicroBatcher(model, maxBatchSize, maxDelayMillis);
+        // Inputs are scaled to [0, 1] before they reach the cache; 256 levels only merge
+        // inputs that differ by rounding.
+        this.cache = cacheSize > 0 ? new PredictionCache(cacheSize, 1, 256) : null;
+        this.decoders = ThreadLocal.withInitial(() -> new ImageDecoder(side, false));
+        // JDK 17 has no virtual threads, so handlers run on a fixed pool; each one blocks
+        // only while its request waits for a batch.
+        this.executor = Executors.newFixedThreadPool(threads);
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/predict", this::handlePredict);
+        server.createContext("/metrics", this::handleMetrics);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public static void main(String[] args) throws IOException {
+        String modelPath = Path.of("src", "main", "resources", "com", "networks", "network.bin").toString();
+        int port = 8080, maxBatch = 32, threads = 64, cacheSize = 0;
+        double maxDelay = 2;
+
+        for(int i = 0; i < args.length; i++){
+            switch(args[i]){
+                case "--model" -> modelPath = args[++i];
+                case "--port" -> port = Integer.parseInt(args[++i]);
+                case "--max-batch" -> maxBatch = Integer.parseInt(args[++i]);
+                case "--max-delay" -> maxDelay = Double.parseDouble(args[++i]);
+                case "--threads" -> threads = Integer.parseInt(args[++i]);
+                case "--cache" -> cacheSize = Integer.parseInt(args[++i]);
+                default -> {
+                    System.err.println("Usage: InferenceServer [--model path] [--port 8080] [--max-batch 32] [--max-delay ms] [--threads 64] [--cache 0]");
+                    System.exit(1);
+                }
+            }
+        }
+
+        InferenceServer server = new InferenceServer(NetworkModel.load(modelPath), port, maxBatch, maxDelay, threads, cacheSize);
+        System.out.println("Serving " + modelPath + " on http://localhost:" + server.getPort() + "/predict");
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private void handlePredict(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        try(exchange){
+            if(!"POST".equals(exchange.getRequestMethod())){
+                send(exchange, 405, "text/plain", "Use POST");
+                return;
+            }
+
+            double[] input;
+            try{
+                input = parseInput(exchange.getRequestBody().readAllBytes(), parseScale(exchange.getRequestURI().getRawQuery()));
+            }catch(IOException | IllegalArgumentException e){
+                errors.increment();
+                send(exchange, 400, "text/plain", "Bad input: " + e.getMessage());
+                return;
+            }
+
+            double[] output = cache == null ? null : cache.get(input, model);
+            try{
+                if(output == null){
+                    output = batcher.submit(input).get(REQUEST_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                    if(cache != null) cache.put(input, model, output);
+                }
+            }catch(ExecutionException | TimeoutException e){
+                errors.increment();
+                send(exchange, 503, "text/plain", "Inference failed: " + e);
+                return;
+            }catch(InterruptedException e){
+                Thread.currentThread().interrupt();
+                errors.increment();
+                return;
+            }
+
+            send(exchange, 200, "application/json", toJson(output));
+            requests.increment();
+            long end = System.nanoTime();
+            latencies.record(end - start);
+            recent.record(end);
+        }
+    }
+
+    // The scale is never guessed from the values: a 0-255 image whose brightest pixel is 1 looks like a 0-1 image.
+    private static double parseScale(String query) {
+        if(query == null) return 1;
+
+        for(String parameter : query.split("&")){
+            if(!parameter.startsWith("scale=")) continue;
+
+            double scale = Double.parseDouble(parameter.substring("scale=".length()));
+            if(!(scale > 0)) throw new IllegalArgumentException("Scale must be positive, but found " + scale);
+            return scale;
+        }
+
+        return 1;
+    }
+
+    private double[] parseInput(byte[] body, double scale) throws IOException {
+        double[] input = new double[model.getInputSize()];
+        if(body.length >= PNG_SIGNATURE.length && Arrays.equals(body, 0, PNG_SIGNATURE.length, PNG_SIGNATURE, 0, PNG_SIGNATURE.length)){
+            decoders.get().decode(body, input);
+            return input;
+        }
+
+        String[] values = new String(body, StandardCharsets.US_ASCII).replace('[', ' ').replace(']', ' ').trim().split("[\\s,]+");
+        if(values.length != input.length) throw new IllegalArgumentException("Expected " + input.length + " values, but found " + values.length);
+
+        for(int i = 0; i < input.length; i++){
+            input[i] = Double.parseDouble(values[i]) / scale;
+        }
+
+        return input;
+    }
+
+    // Sigmoid outputs are independent, so they are reported as shares of their sum.
+    private static String toJson(double[] output) {
+        double total = 0;
+        for(double value : output) total += value;
+
+        StringBuilder json = new StringBuilder("{\"prediction\":").append(InferenceModel.argMax(output)).append(",\"probabilities\":[");
+        for(int i = 0; i < output.length; i++){
+            if(i > 0) json.append(',');
+            json.append(String.format(Locale.ROOT, "%.6f", total > 0 ? output[i] / total : 0));
+        }
+
+        return json.append("]}").toString();
+    }
+
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        try(exchange){
+            long now = System.nanoTime();
+            double uptime = (now - startNanos) / 1e9;
+            String body = String.format(Locale.ROOT,
+                    "requests %d%nerrors %d%nuptime_seconds %.1f%nrequests_per_second %.1f%nrecent_requests_per_second %.1f%n" +
+                    "latency_p50_ms %.3f%nlatency_p99_ms %.3f%nlatency_p999_ms %.3f%nbatches %d%naverage_batch_size %.2f%n",
+                    requests.sum(), errors.sum(), uptime, requests.sum() / uptime, recent.rate(now, now - startNanos),
+                    latencies.getPercentile(50) / 1e6, latencies.getPercentile(99) / 1e6, latencies.getPercentile(99.9) / 1e6,
+                    batcher.getBatchCount(), batcher.getAverageBatchSize());
+            if(cache != null){
+                body += String.format(Locale.ROOT, "cache_hits %d%ncache_misses %d%ncache_evictions %d%ncache_hit_rate %.3f%n",
+                        cache.getHits(), cache.getMisses(), cache.getEvictions(), cache.getHitRate());
+            }
+            send(exchange, 200, "text/plain", body);
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try(OutputStream out = exchange.getResponseBody()){
+            out.write(bytes);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        batcher.close();
+        executor.shutdownNow();
+    }
+
+    /**
+     * Completion times of the most recent requests, for the current request rate. Request
+     * threads claim a slot with one atomic increment, so recording never blocks.
+     */
+    private static final class RecentRequests {
+        private static final long RATE_WINDOW_NANOS = 10_000_000_000L;
+        private final AtomicLongArray times;
+        private final AtomicLong count = new AtomicLong();
+
+        private RecentRequests(int capacity) {
+            times = new AtomicLongArray(capacity);
+        }
+
+        private void record(long time) {
+            times.set((int) (count.getAndIncrement() % times.length()), time);
+        }
+
+        private double rate(long now, long uptime) {
+            long window = Math.min(RATE_WINDOW_NANOS, uptime);
+            int size = (int) Math.min(count.get(), times.length());
+            int recent = 0;
+            long oldest = now;
+            for(int i = 0; i < size; i++){
+                long time = times.get(i);
+                if(now - time <= window){
+                    recent++;
+                    oldest = Math.min(oldest, time);
+                }
+            }
+
+            // With a full buffer the recorded requests may span less than the window.
+            double seconds = (size == times.length() && recent == size ? now - oldest : window) / 1e9;
+            return seconds > 0 ? recent / seconds : 0;
+        }
+    }
+}
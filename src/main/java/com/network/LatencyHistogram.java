@@ -0,0 +1,100 @@
+package com.network;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of non-negative durations in nanoseconds, bucketed like an HDR
+ * histogram: every power of two is split into {@code SUB_BUCKETS} linear buckets, so a
+ * reported percentile is at most 1/16 above the recorded value over the whole range.
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = SUB_BUCKETS + (63 - SUB_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucket(value));
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * Records {@code times} durations of {@code nanos} each.
+     */
+    public void record(long nanos, long times) {
+        long value = Math.max(0, nanos);
+        counts.addAndGet(bucket(value), times);
+        count.add(times);
+        sum.add(value * times);
+        max.accumulate(value);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public double getMean() {
+        long samples = count.sum();
+        return samples == 0 ? 0 : (double) sum.sum() / samples;
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * The highest value of the bucket that holds the given percentile, 0 if nothing was recorded.
+     */
+    public long getPercentile(double percentile) {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for(int i = 0; i < BUCKETS; i++){
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if(total == 0) return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for(int i = 0; i < BUCKETS; i++){
+            seen += snapshot[i];
+            if(seen >= rank) return Math.min(highestValue(i), max.get());
+        }
+
+        return max.get();
+    }
+
+    /**
+     * Clears all buckets. Values recorded concurrently may survive or be lost.
+     */
+    public void reset() {
+        for(int i = 0; i < BUCKETS; i++) counts.set(i, 0);
+        count.reset();
+        sum.reset();
+        max.reset();
+    }
+
+    private static int bucket(long value) {
+        if(value < SUB_BUCKETS) return (int) value;
+
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return SUB_BUCKETS + shift * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    private static long highestValue(int bucket) {
+        if(bucket < SUB_BUCKETS) return bucket;
+
+        int shift = (bucket - SUB_BUCKETS) / SUB_BUCKETS;
+        long sub = SUB_BUCKETS + (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+        return ((sub + 1) << shift) - 1;
+    }
+}
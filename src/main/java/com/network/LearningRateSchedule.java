@@ -0,0 +1,96 @@
+package com.network;
+
+/**
+ * Scales the learning rate by the number of optimizer steps taken so far. Schedules are written
+ * as short specs that {@link #parse} reads back: {@code constant}, {@code step:every:factor}
+ * (multiply by {@code factor} every {@code every} steps) and {@code cosine:steps[:floor]} (cosine
+ * decay to {@code floor} times the rate over {@code steps} steps, then constant).
+ */
+public final class LearningRateSchedule {
+    private static final LearningRateSchedule CONSTANT = new LearningRateSchedule(Kind.CONSTANT, 0, 1);
+
+    private enum Kind { CONSTANT, STEP, COSINE }
+
+    private final Kind kind;
+    private final long steps;
+    private final double factor;
+
+    private LearningRateSchedule(Kind kind, long steps, double factor) {
+        this.kind = kind;
+        this.steps = steps;
+        this.factor = factor;
+    }
+
+    public static LearningRateSchedule constant() {
+        return CONSTANT;
+    }
+
+    /**
+     * Multiplies the rate by {@code factor} every {@code every} steps.
+     */
+    public static LearningRateSchedule stepDecay(long every, double factor) {
+        if(every < 1) throw new IllegalArgumentException("Decay interval must be positive, but found " + every);
+        if(!(factor > 0)) throw new IllegalArgumentException("Decay factor must be positive, but found " + factor);
+
+        return new LearningRateSchedule(Kind.STEP, every, factor);
+    }
+
+    /**
+     * Decays the rate along a half cosine to {@code floor} times its value over {@code steps} steps.
+     */
+    public static LearningRateSchedule cosine(long steps, double floor) {
+        if(steps < 1) throw new IllegalArgumentException("Cosine length must be positive, but found " + steps);
+        if(floor < 0 || floor > 1) throw new IllegalArgumentException("Cosine floor must be between 0 and 1, but found " + floor);
+
+        return new LearningRateSchedule(Kind.COSINE, steps, floor);
+    }
+
+    /**
+     * Reads a spec as written by {@link #toString}. A {@code cosine} spec without a length runs
+     * over {@code totalSteps}.
+     */
+    public static LearningRateSchedule parse(String spec, long totalSteps) {
+        String[] parts = spec.split(":");
+        try{
+            switch(parts[0]){
+                case "constant":
+                    if(parts.length == 1) return constant();
+                    break;
+                case "step":
+                    if(parts.length == 3) return stepDecay(Long.parseLong(parts[1]), Double.parseDouble(parts[2]));
+                    break;
+                case "cosine":
+                    if(parts.length <= 3) return cosine(parts.length > 1 ? Long.parseLong(parts[1]) : totalSteps, parts.length > 2 ? Double.parseDouble(parts[2]) : 0);
+                    break;
+            }
+        }catch(NumberFormatException e){
+            throw new IllegalArgumentException("Bad learning rate schedule " + spec, e);
+        }
+
+        throw new IllegalArgumentException("Unknown learning rate schedule " + spec + ". Expected constant, step:every:factor or cosine[:steps[:floor]]");
+    }
+
+    /**
+     * The rate of step {@code step}, counted from 0, for a base rate of {@code rate}.
+     */
+    public double rate(double rate, long step) {
+        return switch(kind){
+            case CONSTANT -> rate;
+            case STEP -> rate * Math.pow(factor, step / steps);
+            case COSINE -> rate * (factor + (1 - factor) * 0.5 * (1 + Math.cos(Math.PI * Math.min(step, steps) / steps)));
+        };
+    }
+
+    boolean isConstant() {
+        return kind == Kind.CONSTANT;
+    }
+
+    @Override
+    public String toString() {
+        return switch(kind){
+            case CONSTANT -> "constant";
+            case STEP -> "step:" + steps + ":" + factor;
+            case COSINE -> "cosine:" + steps + ":" + factor;
+        };
+    }
+}
@@ -0,0 +1,140 @@
+package com.network;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects concurrent single-sample requests into batches for
+ * {@link NetworkModel#calculateBatch(double[], double[], int, NetworkWorkspace)}. A batch is
+ * closed when it holds {@code maxBatchSize} requests or when its first request has waited
+ * {@code maxDelayMillis}, whichever comes first, so an idle server answers a lone request
+ * after at most that delay. The batcher thread owns the workspace, so scoring a batch
+ * allocates nothing but the per-request results.
+ */
+public class MicroBatcher implements AutoCloseable {
+    private final NetworkModel model;
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private final LinkedBlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+    private final Thread thread;
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder batchedRequests = new LongAdder();
+    private volatile boolean running = true;
+
+    public MicroBatcher(NetworkModel model, int maxBatchSize, double maxDelayMillis) {
+        if(maxBatchSize < 1) throw new IllegalArgumentException("Batch size must be positive, but found " + maxBatchSize);
+
+        this.model = model;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayNanos = (long) (maxDelayMillis * 1_000_000);
+        this.thread = new Thread(this::run, "micro-batcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Queues {@code input} and returns a future of the model's output for it.
+     */
+    public CompletableFuture<double[]> submit(double[] input) {
+        CompletableFuture<double[]> result = new CompletableFuture<>();
+        if(input.length != model.getInputSize()){
+            result.completeExceptionally(new NetworkException("Expected input size " + model.getInputSize() + ", but found " + input.length));
+        }else if(!running){
+            result.completeExceptionally(new NetworkException("Batcher is closed"));
+        }else{
+            Request request = new Request(input, result);
+            queue.add(request);
+
+            // close() may have drained the queue between the check above and the add.
+            if(!running && queue.remove(request)) result.completeExceptionally(new NetworkException("Batcher is closed"));
+        }
+
+        return result;
+    }
+
+    private void run() {
+        int inputSize = model.getInputSize();
+        int outputSize = model.getOutputSize();
+        double[] inputs = new double[maxBatchSize * inputSize];
+        double[] outputs = new double[maxBatchSize * outputSize];
+        NetworkWorkspace workspace = model.newWorkspace();
+        List<Request> batch = new ArrayList<>(maxBatchSize);
+
+        try{
+            while(running){
+                Request first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if(first == null) continue;
+
+                batch.add(first);
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while(batch.size() < maxBatchSize){
+                    long remaining = deadline - System.nanoTime();
+                    Request next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if(next == null) break;
+
+                    batch.add(next);
+                }
+
+                score(batch, inputs, outputs, workspace, inputSize, outputSize);
+                batch.clear();
+            }
+        }catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+
+        for(Request request : batch) request.result.completeExceptionally(new NetworkException("Batcher is closed"));
+        for(Request request; (request = queue.poll()) != null;) request.result.completeExceptionally(new NetworkException("Batcher is closed"));
+    }
+
+    private void score(List<Request> batch, double[] inputs, double[] outputs, NetworkWorkspace workspace, int inputSize, int outputSize) {
+        int count = batch.size();
+        for(int i = 0; i < count; i++){
+            System.arraycopy(batch.get(i).input, 0, inputs, i * inputSize, inputSize);
+        }
+
+        try{
+            model.calculateBatch(inputs, outputs, count, workspace);
+        }catch(NetworkException | RuntimeException e){
+            for(Request request : batch) request.result.completeExceptionally(e);
+            return;
+        }
+
+        for(int i = 0; i < count; i++){
+            double[] output = new double[outputSize];
+            System.arraycopy(outputs, i * outputSize, output, 0, outputSize);
+            batch.get(i).result.complete(output);
+        }
+
+        batches.increment();
+        batchedRequests.add(count);
+    }
+
+    public long getBatchCount() {
+        return batches.sum();
+    }
+
+    public double getAverageBatchSize() {
+        long count = batches.sum();
+        return count == 0 ? 0 : (double) batchedRequests.sum() / count;
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        thread.interrupt();
+    }
+
+    private static final class Request {
+        private final double[] input;
+        private final CompletableFuture<double[]> result;
+
+        private Request(double[] input, CompletableFuture<double[]> result) {
+            this.input = input;
+            this.result = result;
+        }
+    }
+}
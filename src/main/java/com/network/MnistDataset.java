@@ -0,0 +1,48 @@
+package com.network;
+
+import java.io.IOException;
+
+/**
+ * {@link Dataset} backed by a pair of memory-mapped IDX files. Nothing is loaded onto the heap;
+ * pixels are normalized while a sample is copied out.
+ */
+public class MnistDataset implements Dataset {
+    private final IdxFile images;
+    private final IdxFile labels;
+
+    public MnistDataset(IdxFile images, IdxFile labels) {
+        if(images.size() != labels.size()) throw new IllegalArgumentException("Expected one label per image, but found " + images.size() + " images and " + labels.size() + " labels");
+        if(labels.getSampleSize() != 1) throw new IllegalArgumentException("Label file must be one-dimensional");
+
+        this.images = images;
+        this.labels = labels;
+    }
+
+    public static MnistDataset open(String imagesPath, String labelsPath) throws IOException {
+        return new MnistDataset(new IdxFile(imagesPath), new IdxFile(labelsPath));
+    }
+
+    @Override
+    public int size() {
+        return images.size();
+    }
+
+    @Override
+    public int getInputSize() {
+        return images.getSampleSize();
+    }
+
+    @Override
+    public void copyInput(int index, double[] dest) {
+        images.copySample(index, dest);
+    }
+
+    @Override
+    public int getLabel(int index) {
+        return labels.getUnsigned(index, 0);
+    }
+
+    public IdxFile getImages() {
+        return images;
+    }
+}
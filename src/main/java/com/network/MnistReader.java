@@ -1,35 +1,27 @@
 package com.network;
 
-import java.io.DataInputStream;
-import java.io.FileInputStream;
 import java.io.IOException;
 
 public class MnistReader {
     public static double[][] loadImages(String path) throws IOException {
-        DataInputStream dataInputStream = new DataInputStream(new FileInputStream(path));
-        int magic = dataInputStream.readInt();
-        int count = dataInputStream.readInt();
-        int rows = dataInputStream.readInt();
-        int cols = dataInputStream.readInt();
+        IdxFile file = new IdxFile(path);
+        if(file.getDimensions().length != 3) throw new IOException("Expected an IDX image file, but found " + file.getDimensions().length + " dimensions in " + path);
 
-        double[][] images = new double[count][rows * cols];
-        for(int i = 0; i < count; i++){
-            for(int j = 0; j < rows * cols; j++){
-                images[i][j] = (double) dataInputStream.readUnsignedByte() / 255;
-            }
+        double[][] images = new double[file.size()][file.getSampleSize()];
+        for(int i = 0; i < images.length; i++){
+            file.copySample(i, images[i]);
         }
 
         return images;
     }
 
     public static int[] loadLabels(String path) throws IOException{
-        DataInputStream dataInputStream = new DataInputStream(new FileInputStream(path));
-        int magic = dataInputStream.readInt();
-        int count = dataInputStream.readInt();
+        IdxFile file = new IdxFile(path);
+        if(file.getDimensions().length != 1) throw new IOException("Expected an IDX label file, but found " + file.getDimensions().length + " dimensions in " + path);
 
-        int[] labels = new int[count];
-        for(int i = 0; i < count; i++){
-            labels[i] = dataInputStream.readUnsignedByte();
+        int[] labels = new int[file.size()];
+        for(int i = 0; i < labels.length; i++){
+            labels[i] = file.getUnsigned(i, 0);
         }
 
         return labels;
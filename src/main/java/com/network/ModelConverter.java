@@ -0,0 +1,29 @@
+package com.network;
+
+import java.io.IOException;
+
+/**
+ * Converts network files between the text and the binary format.
+ * Usage: {@code ModelConverter <input> <output> [--float]}. The output is written as text when
+ * its name ends with {@code .txt}, otherwise as binary; {@code --float} stores binary weights
+ * in single precision.
+ */
+public class ModelConverter {
+    public static void main(String[] args) throws IOException {
+        if(args.length < 2){
+            System.err.println("Usage: ModelConverter <input> <output> [--float]");
+            System.exit(1);
+        }
+
+        boolean singlePrecision = args.length > 2 && args[2].equals("--float");
+
+        long start = System.nanoTime();
+        Network network = new Network(args[0]);
+        long loaded = System.nanoTime();
+
+        if(args[1].endsWith(".txt")) network.save(args[1]);
+        else network.saveBinary(args[1], singlePrecision);
+
+        System.out.println("Loaded " + args[0] + " in " + (loaded - start) / 1_000_000 + "ms, wrote " + args[1] + " in " + (System.nanoTime() - loaded) / 1_000_000 + "ms");
+    }
+}
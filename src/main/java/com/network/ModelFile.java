@@ -0,0 +1,302 @@
+package com.network;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Reads and writes network files. Two formats exist: the original text format, and a binary
+ * format laid out as follows (all values little-endian):
+ * <pre>
+ *   int    magic ("NGNN")
+ *   int    format version
+ *   int    payload precision (8 = double, 4 = float)
+ *   int    layer count
+ *   int[]  layer sizes
+ *   int[]  activation of layers 1..n-1 as {@link Activation} ordinal (since version 2)
+ *   int    CRC32 of the payload
+ *   ...    zero padding up to a multiple of 8 bytes
+ *   per layer 1..n-1: weights in [prevNeuron][neuron] order, then biases
+ * </pre>
+ * Binary files are memory-mapped on load, so the payload is copied straight out of the page
+ * cache without any parsing. Files without activations, text or binary version 1, use sigmoid
+ * on every layer.
+ */
+public final class ModelFile {
+    public static final int MAGIC = 0x4E4E474E;
+    public static final int VERSION = 2;
+    private static final int SIGMOID_ONLY_VERSION = 1;
+    private static final String ACTIVATIONS_HEADER = "# Activations ";
+    private static final int DOUBLE_PRECISION = Double.BYTES;
+    private static final int FLOAT_PRECISION = Float.BYTES;
+
+    private ModelFile() {
+    }
+
+    public static boolean isBinary(String path) throws IOException {
+        try(FileChannel channel = FileChannel.open(Path.of(path), StandardOpenOption.READ)){
+            ByteBuffer magic = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while(magic.hasRemaining() && channel.read(magic) >= 0);
+
+            return !magic.hasRemaining() && magic.getInt(0) == MAGIC;
+        }
+    }
+
+    static NetworkParameters read(String path) throws IOException {
+        if(!new File(path).exists()) throw new FileNotFoundException("Network file not found: " + path);
+
+        return isBinary(path) ? readBinary(path) : readText(path);
+    }
+
+    /**
+     * Reads a network file of either format from {@code in}, e.g. a classpath resource.
+     * {@code name} only appears in error messages.
+     */
+    static NetworkParameters read(InputStream in, String name) throws IOException {
+        byte[] bytes = in.readAllBytes();
+        ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        if(bytes.length >= Integer.BYTES && buffer.getInt(0) == MAGIC) return readBinary(buffer, name);
+
+        try(BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(bytes), StandardCharsets.UTF_8))){
+            return readText(reader);
+        }
+    }
+
+    static NetworkParameters readBinary(String path) throws IOException {
+        try(FileChannel channel = FileChannel.open(Path.of(path), StandardOpenOption.READ)){
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return readBinary(buffer, path);
+        }
+    }
+
+    private static NetworkParameters readBinary(ByteBuffer buffer, String path) throws IOException {
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        long size = buffer.limit();
+
+        if(buffer.remaining() < 16 || buffer.getInt() != MAGIC) throw new IOException("Bad header. Expected binary network file");
+        int version = buffer.getInt();
+        if(version != VERSION && version != SIGMOID_ONLY_VERSION) throw new IOException("Unsupported network file version " + version);
+        int precision = buffer.getInt();
+        if(precision != DOUBLE_PRECISION && precision != FLOAT_PRECISION) throw new IOException("Unsupported payload precision " + precision);
+        int layers = buffer.getInt();
+        if(layers < 2 || buffer.remaining() < headerSize(layers, version) - 4 * Integer.BYTES) throw new IOException("Bad header. Invalid layer count " + layers);
+
+        int[] layerSizes = new int[layers];
+        for(int layer = 0; layer < layers; layer++){
+            layerSizes[layer] = buffer.getInt();
+            if(layerSizes[layer] < 1) throw new IOException("Bad header. Invalid size " + layerSizes[layer] + " of layer " + layer);
+        }
+
+        Activation[] activations = NetworkParameters.defaultActivations(layers);
+        if(version != SIGMOID_ONLY_VERSION){
+            Activation[] values = Activation.values();
+            for(int layer = 1; layer < layers; layer++){
+                int id = buffer.getInt();
+                if(id < 0 || id >= values.length) throw new IOException("Bad header. Unknown activation " + id + " of layer " + layer);
+                activations[layer] = values[id];
+            }
+        }
+        int checksum = buffer.getInt();
+
+        int payloadOffset = headerSize(layers, version);
+        long payloadSize = (long) parameterCount(layerSizes) * precision;
+        if(size != payloadOffset + payloadSize) throw new IOException("Bad payload. Expected " + payloadSize + " bytes, but found " + (size - payloadOffset));
+
+        buffer.position(payloadOffset);
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate());
+        if((int) crc.getValue() != checksum) throw new IOException("Bad payload. Checksum mismatch in " + path);
+
+        double[][] weights = new double[layers][];
+        double[][] biases = new double[layers][];
+        if(precision == DOUBLE_PRECISION){
+            DoubleBuffer payload = buffer.asDoubleBuffer();
+            for(int layer = 1; layer < layers; layer++){
+                weights[layer] = new double[layerSizes[layer - 1] * layerSizes[layer]];
+                biases[layer] = new double[layerSizes[layer]];
+                payload.get(weights[layer]).get(biases[layer]);
+            }
+        }else{
+            FloatBuffer payload = buffer.asFloatBuffer();
+            for(int layer = 1; layer < layers; layer++){
+                weights[layer] = readFloats(payload, layerSizes[layer - 1] * layerSizes[layer]);
+                biases[layer] = readFloats(payload, layerSizes[layer]);
+            }
+        }
+
+        return new NetworkParameters(layerSizes, weights, biases, checkActivations(activations, layers));
+    }
+
+    static void writeBinary(String path, NetworkParameters parameters, boolean singlePrecision) throws IOException {
+        int[] layerSizes = parameters.layerSizes;
+        int layers = layerSizes.length;
+        int precision = singlePrecision ? FLOAT_PRECISION : DOUBLE_PRECISION;
+
+        ByteBuffer payload = ByteBuffer.allocateDirect(parameterCount(layerSizes) * precision).order(ByteOrder.LITTLE_ENDIAN);
+        if(singlePrecision){
+            FloatBuffer floats = payload.asFloatBuffer();
+            for(int layer = 1; layer < layers; layer++){
+                for(double weight : parameters.weights[layer]) floats.put((float) weight);
+                for(double bias : parameters.biases[layer]) floats.put((float) bias);
+            }
+        }else{
+            DoubleBuffer doubles = payload.asDoubleBuffer();
+            for(int layer = 1; layer < layers; layer++){
+                doubles.put(parameters.weights[layer]).put(parameters.biases[layer]);
+            }
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(payload.duplicate());
+
+        ByteBuffer header = ByteBuffer.allocate(headerSize(layers, VERSION)).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putInt(precision).putInt(layers);
+        for(int size : layerSizes) header.putInt(size);
+        for(int layer = 1; layer < layers; layer++) header.putInt(parameters.activations[layer].ordinal());
+        header.putInt((int) crc.getValue());
+        header.clear();
+
+        try(FileChannel channel = FileChannel.open(Path.of(path), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)){
+            ByteBuffer[] buffers = {header, payload};
+            while(payload.hasRemaining()){
+                channel.write(buffers);
+            }
+        }
+    }
+
+    static NetworkParameters readText(String path) throws IOException {
+        try(BufferedReader reader = Files.newBufferedReader(Path.of(path))){
+            return readText(reader);
+        }
+    }
+
+    private static NetworkParameters readText(BufferedReader reader) throws IOException {
+        String line = reader.readLine();
+        if(line == null || !line.startsWith("# Network size ")) throw new IOException("Bad header. Expected: # Network size");
+        int layers = Integer.parseInt(line.substring(15));
+
+        line = reader.readLine();
+        if(line == null || !line.startsWith("# Network layer sizes ")) throw new IOException("Bad header. Expected: # Network layer sizes");
+        int[] layerSizes = Arrays.stream(line.substring(22).split(" ")).mapToInt(Integer::parseInt).toArray();
+        if(layerSizes.length != layers) throw new IOException("Bad header. Expected " + layers + " layer sizes, but found " + layerSizes.length);
+
+        Activation[] activations = NetworkParameters.defaultActivations(layers);
+        line = reader.readLine();
+        if(line != null && line.startsWith(ACTIVATIONS_HEADER)){
+            String[] names = line.substring(ACTIVATIONS_HEADER.length()).trim().split(" ");
+            if(names.length != layers - 1) throw new IOException("Bad header. Expected " + (layers - 1) + " activations, but found " + names.length);
+
+            for(int layer = 1; layer < layers; layer++){
+                try{
+                    activations[layer] = Activation.forName(names[layer - 1]);
+                }catch(IllegalArgumentException e){
+                    throw new IOException("Bad header. " + e.getMessage(), e);
+                }
+            }
+            line = reader.readLine();
+        }
+
+        double[][] weights = new double[layers][];
+        double[][] biases = new double[layers][];
+        for(int layer = 1; layer < layers; layer++){
+            if(layer > 1) line = reader.readLine();
+            if(!("# Weights layer " + layer).equals(line)) throw new IOException("Bad header. Expected: # Weights layer " + layer);
+
+            int neurons = layerSizes[layer];
+            weights[layer] = new double[layerSizes[layer - 1] * neurons];
+            for(int prevNeuron = 0; prevNeuron < layerSizes[layer - 1]; prevNeuron++){
+                double[] row = Arrays.stream(reader.readLine().split(" ")).mapToDouble(Double::parseDouble).toArray();
+                if(row.length != neurons) throw new IOException("Bad weights row. Expected " + neurons + " values, but found " + row.length);
+
+                System.arraycopy(row, 0, weights[layer], prevNeuron * neurons, neurons);
+            }
+
+            if(!("# Biases layer " + layer).equals(reader.readLine())) throw new IOException("Bad header. Expected: # Biases layer " + layer);
+
+            biases[layer] = Arrays.stream(reader.readLine().split(" ")).mapToDouble(Double::parseDouble).toArray();
+            if(biases[layer].length != neurons) throw new IOException("Bad biases row. Expected " + neurons + " values, but found " + biases[layer].length);
+        }
+
+        return new NetworkParameters(layerSizes, weights, biases, checkActivations(activations, layers));
+    }
+
+    static void writeText(String path, NetworkParameters parameters) throws IOException {
+        int[] layerSizes = parameters.layerSizes;
+
+        try(BufferedWriter writer = new BufferedWriter(new FileWriter(path))){
+            writer.write("# Network size " + layerSizes.length + "\n");
+            writer.write("# Network layer sizes ");
+            for(int size : layerSizes) writer.write(size + " ");
+            writer.write("\n");
+
+            // Sigmoid-only networks keep the original header, so older readers can still load them.
+            if(!Arrays.equals(parameters.activations, NetworkParameters.defaultActivations(layerSizes.length))){
+                writer.write(ACTIVATIONS_HEADER);
+                for(int layer = 1; layer < layerSizes.length; layer++) writer.write(parameters.activations[layer].getName() + " ");
+                writer.write("\n");
+            }
+
+            for(int layer = 1; layer < layerSizes.length; layer++){
+                writer.write("# Weights layer " + layer + "\n");
+
+                int neurons = layerSizes[layer];
+                for(int prevNeuron = 0; prevNeuron < layerSizes[layer - 1]; prevNeuron++){
+                    for(int neuron = 0; neuron < neurons; neuron++){
+                        writer.write(parameters.weights[layer][prevNeuron * neurons + neuron] + " ");
+                    }
+
+                    writer.write("\n");
+                }
+
+                writer.write("# Biases layer " + layer + "\n");
+                for(int neuron = 0; neuron < neurons; neuron++){
+                    writer.write(parameters.biases[layer][neuron] + " ");
+                }
+
+                writer.write("\n");
+            }
+        }
+    }
+
+    private static double[] readFloats(FloatBuffer buffer, int count) {
+        double[] res = new double[count];
+        for(int i = 0; i < count; i++){
+            res[i] = buffer.get();
+        }
+
+        return res;
+    }
+
+    private static Activation[] checkActivations(Activation[] activations, int layers) throws IOException {
+        try{
+            return NetworkParameters.checkActivations(activations, layers);
+        }catch(IllegalArgumentException e){
+            throw new IOException("Bad header. " + e.getMessage(), e);
+        }
+    }
+
+    private static int headerSize(int layers, int version) {
+        int activations = version == SIGMOID_ONLY_VERSION ? 0 : layers - 1;
+        int size = (5 + layers + activations) * Integer.BYTES;
+        return (size + 7) & ~7;
+    }
+
+    private static int parameterCount(int[] layerSizes) {
+        int count = 0;
+        for(int layer = 1; layer < layerSizes.length; layer++){
+            count += layerSizes[layer - 1] * layerSizes[layer] + layerSizes[layer];
+        }
+
+        return count;
+    }
+}
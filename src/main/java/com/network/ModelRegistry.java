@@ -0,0 +1,256 @@
+package com.network;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Serves predictions from the newest valid model of a directory. A background thread watches
+ * the directory, loads new or changed {@code .bin} and {@code .txt} model files, validates
+ * them and swaps the active version atomically. The read path is a single volatile read, so
+ * a prediction that already started finishes on the model it began with while the next one
+ * uses the new model. The last {@code residentVersions} models stay loaded for
+ * {@link #rollback()}.
+ * <p>
+ * Writers should create model files under a temporary name and rename them into the
+ * directory. A file caught half-written fails validation and is retried on its next change.
+ * The registry never creates the directory: if it does not exist, nothing is watched and only
+ * models passed to {@link #register} or {@link #load} are served.
+ */
+public class ModelRegistry implements AutoCloseable {
+    private static final long SETTLE_MILLIS = 200;
+
+    private final Path directory;
+    private final int residentVersions;
+    private final AtomicReference<ModelVersion> active = new AtomicReference<>();
+    private final Deque<ModelVersion> resident = new ArrayDeque<>();
+    private final List<Consumer<ModelVersion>> listeners = new CopyOnWriteArrayList<>();
+    private final PredictionCache cache;
+    private final WatchService watcher;
+    private final Thread thread;
+    private int nextNumber = 1;
+
+    /**
+     * Loads the newest valid model in {@code directory}, if any, and starts watching it if it exists.
+     */
+    public ModelRegistry(Path directory, int residentVersions) throws IOException {
+        this(directory, residentVersions, null);
+    }
+
+    /**
+     * Like {@link #ModelRegistry(Path, int)}, but answers repeated inputs from {@code cache},
+     * which is invalidated whenever the active version changes. {@code cache} may be null.
+     */
+    public ModelRegistry(Path directory, int residentVersions, PredictionCache cache) throws IOException {
+        if(residentVersions < 1) throw new IllegalArgumentException("At least one version must stay resident, but found " + residentVersions);
+
+        this.directory = directory;
+        this.residentVersions = residentVersions;
+        this.cache = cache;
+        if(!Files.isDirectory(directory)){
+            this.watcher = null;
+            this.thread = null;
+            return;
+        }
+
+        this.watcher = directory.getFileSystem().newWatchService();
+        directory.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+
+        try(Stream<Path> files = Files.list(directory)){
+            List<Path> candidates = new ArrayList<>(files.filter(ModelRegistry::isModelFile).toList());
+            candidates.sort(Comparator.comparing(ModelRegistry::lastModified).reversed());
+            for(Path candidate : candidates){
+                if(tryLoad(candidate) != null) break;
+            }
+        }
+
+        this.thread = new Thread(this::watch, "model-registry");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Scores {@code input} on the active model and reports which version did it.
+     */
+    public Prediction predict(double[] input) throws NetworkException {
+        ModelVersion version = getActive();
+        NetworkModel model = version.getModel();
+
+        double[] output = cache == null ? null : cache.get(input, model);
+        if(output == null){
+            output = new double[model.getOutputSize()];
+            model.calculate(input, output);
+            if(cache != null) cache.put(input, model, output);
+        }
+
+        return new Prediction(output, version);
+    }
+
+    /**
+     * The version that serves predictions right now.
+     */
+    public ModelVersion getActive() throws NetworkException {
+        ModelVersion version = active.get();
+        if(version == null) throw new NetworkException("No model loaded from " + directory);
+
+        return version;
+    }
+
+    public boolean hasModel() {
+        return active.get() != null;
+    }
+
+    /**
+     * Validates and activates an already loaded model, e.g. a bundled fallback.
+     */
+    public ModelVersion register(String source, NetworkModel model) throws NetworkException {
+        return activate(source, model);
+    }
+
+    /**
+     * Loads {@code path}, validates it and makes it the active version.
+     */
+    public ModelVersion load(Path path) throws IOException, NetworkException {
+        return activate(path.toString(), NetworkModel.load(path.toString()));
+    }
+
+    /**
+     * Reactivates the version that was active before the current one. Returns the now
+     * active version, or null if no older version is resident.
+     */
+    public synchronized ModelVersion rollback() {
+        if(resident.size() < 2) return null;
+
+        ModelVersion current = resident.removeFirst();
+        ModelVersion previous = resident.peekFirst();
+        resident.addLast(current);
+        publish(previous);
+        return previous;
+    }
+
+    /**
+     * Resident versions, the active one first.
+     */
+    public synchronized List<ModelVersion> getVersions() {
+        return new ArrayList<>(resident);
+    }
+
+    /**
+     * The cache in front of the active model, or null.
+     */
+    public PredictionCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Calls {@code listener} on the registry's thread whenever the active version changes.
+     */
+    public void addListener(Consumer<ModelVersion> listener) {
+        listeners.add(listener);
+    }
+
+    private synchronized ModelVersion activate(String source, NetworkModel model) throws NetworkException {
+        validate(model);
+
+        ModelVersion version = new ModelVersion(nextNumber++, source, model);
+        resident.addFirst(version);
+        while(resident.size() > residentVersions) resident.removeLast();
+        publish(version);
+        return version;
+    }
+
+    private void publish(ModelVersion version) {
+        active.set(version);
+        // Entries of the old model could no longer be hit anyway, so they are dropped at once.
+        if(cache != null) cache.invalidate();
+        for(Consumer<ModelVersion> listener : listeners) listener.accept(version);
+    }
+
+    // A new model must fit the shape the callers already use and must produce finite outputs.
+    private void validate(NetworkModel model) throws NetworkException {
+        ModelVersion current = active.get();
+        if(current != null){
+            NetworkModel currentModel = current.getModel();
+            if(model.getInputSize() != currentModel.getInputSize() || model.getOutputSize() != currentModel.getOutputSize()){
+                throw new NetworkException("Expected a model with " + currentModel.getInputSize() + " inputs and " + currentModel.getOutputSize() + " outputs, but found " + model);
+            }
+        }
+
+        double[] output = new double[model.getOutputSize()];
+        model.calculate(new double[model.getInputSize()], output);
+        for(double value : output){
+            if(!Double.isFinite(value)) throw new NetworkException("Model produces non-finite outputs");
+        }
+    }
+
+    private ModelVersion tryLoad(Path path) {
+        try{
+            ModelVersion version = load(path);
+            System.out.println("Activated model " + version);
+            return version;
+        }catch(IOException | NetworkException e){
+            System.err.println("Rejected model " + path + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void watch() {
+        try{
+            while(true){
+                WatchKey key = watcher.take();
+
+                // Editors and copies often produce several events per file, so they are
+                // collected until the directory has been quiet for a moment.
+                List<Path> changed = new ArrayList<>();
+                while(key != null){
+                    for(WatchEvent<?> event : key.pollEvents()){
+                        if(event.kind() == StandardWatchEventKinds.OVERFLOW) continue;
+
+                        Path path = directory.resolve((Path) event.context());
+                        if(isModelFile(path) && !changed.contains(path)) changed.add(path);
+                    }
+                    if(!key.reset()) return;
+
+                    key = watcher.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS);
+                }
+
+                changed.sort(Comparator.comparing(ModelRegistry::lastModified));
+                for(Path path : changed){
+                    if(Files.isRegularFile(path)) tryLoad(path);
+                }
+            }
+        }catch(InterruptedException | ClosedWatchServiceException e){
+            // Closed by close().
+        }
+    }
+
+    private static boolean isModelFile(Path path) {
+        String name = path.getFileName().toString();
+        return (name.endsWith(".bin") || name.endsWith(".txt")) && !name.startsWith(".");
+    }
+
+    private static long lastModified(Path path) {
+        try{
+            return Files.getLastModifiedTime(path).toMillis();
+        }catch(IOException e){
+            return 0;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if(watcher == null) return;
+
+        thread.interrupt();
+        watcher.close();
+    }
+}
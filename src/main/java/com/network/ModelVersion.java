@@ -0,0 +1,44 @@
+package com.network;
+
+import java.time.Instant;
+
+/**
+ * One loaded model of a {@link ModelRegistry}, numbered in load order.
+ */
+public final class ModelVersion {
+    private final int number;
+    private final String source;
+    private final NetworkModel model;
+    private final Instant loadedAt;
+
+    ModelVersion(int number, String source, NetworkModel model) {
+        this.number = number;
+        this.source = source;
+        this.model = model;
+        this.loadedAt = Instant.now();
+    }
+
+    public int getNumber() {
+        return number;
+    }
+
+    /**
+     * The file or resource the model was loaded from.
+     */
+    public String getSource() {
+        return source;
+    }
+
+    public NetworkModel getModel() {
+        return model;
+    }
+
+    public Instant getLoadedAt() {
+        return loadedAt;
+    }
+
+    @Override
+    public String toString() {
+        return "v" + number + " (" + source + ")";
+    }
+}
@@ -1,6 +1,8 @@
 package com.network;
 
-import java.io.*;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Arrays;
 
 public class Network {
@@ -8,165 +10,337 @@ public class Network {
     private final int NETWORK_SIZE;
     private final int INPUT_SIZE;
     private final int OUTPUT_SIZE;
-    private double[][][] weights;
+    private double[][] weights;
     private double[][] biases;
     private double[][] outputs;
     private double[][] errorSignals;
+    private double[] deltas;
+    private final long[] backwardNanos;
+    private final Activation[] activations;
+    private GradientBuffer gradients;
+    private Optimizer optimizer;
     public Network(int... NETWORK_LAYER_SIZES) {
-        this.NETWORK_LAYER_SIZES = NETWORK_LAYER_SIZES;
+        this(new NetworkParameters(NETWORK_LAYER_SIZES, NetworkTools.xavierInitialization(NETWORK_LAYER_SIZES), zeroBiases(NETWORK_LAYER_SIZES)));
+    }
+
+    /**
+     * Creates a network with one activation per layer. {@code activations[0]} belongs to the
+     * input layer and is ignored; softmax is only allowed on the output layer.
+     */
+    public Network(Activation[] activations, int... NETWORK_LAYER_SIZES) {
+        this(new NetworkParameters(NETWORK_LAYER_SIZES, NetworkTools.xavierInitialization(NETWORK_LAYER_SIZES), zeroBiases(NETWORK_LAYER_SIZES),
+                NetworkParameters.checkActivations(activations, NETWORK_LAYER_SIZES.length)));
+    }
+
+    /**
+     * Loads a network from either the text format or the binary format written by {@link #saveBinary},
+     * together with the optimizer state saved next to it, if there is one.
+     */
+    public Network(String path) throws IOException {
+        this(ModelFile.read(path));
+
+        String stateFile = Optimizer.stateFile(path);
+        if(Files.exists(Path.of(stateFile))){
+            try{
+                setOptimizer(Optimizer.load(stateFile));
+            }catch(IllegalArgumentException e){
+                throw new IOException("Optimizer state " + stateFile + " does not belong to " + path, e);
+            }
+        }
+    }
+
+    private Network(NetworkParameters parameters) {
+        this.NETWORK_LAYER_SIZES = parameters.layerSizes;
         this.NETWORK_SIZE = NETWORK_LAYER_SIZES.length;
         this.INPUT_SIZE = NETWORK_LAYER_SIZES[0];
         this.OUTPUT_SIZE = NETWORK_LAYER_SIZES[NETWORK_SIZE - 1];
 
-        this.weights = NetworkTools.xavierInitialization(NETWORK_LAYER_SIZES);
+        this.weights = parameters.weights;
+        this.biases = parameters.biases;
+        this.activations = parameters.activations;
 
-        this.biases = new double[NETWORK_SIZE][];
         this.outputs = new double[NETWORK_SIZE][];
         this.errorSignals = new double[NETWORK_SIZE][];
+        this.deltas = new double[maxLayerSize()];
+        this.backwardNanos = new long[NETWORK_SIZE];
         for(int i = 0; i < NETWORK_SIZE; i++){
             outputs[i] = new double[NETWORK_LAYER_SIZES[i]];
+            errorSignals[i] = new double[NETWORK_LAYER_SIZES[i]];
+        }
 
-            if(i > 0){
-                biases[i] = new double[NETWORK_LAYER_SIZES[i]];
-                errorSignals[i] = new double[NETWORK_LAYER_SIZES[i]];
-            }
+        setOptimizer(Optimizer.sgd());
+    }
+
+    private static double[][] zeroBiases(int[] NETWORK_LAYER_SIZES) {
+        double[][] biases = new double[NETWORK_LAYER_SIZES.length][];
+        for(int i = 1; i < NETWORK_LAYER_SIZES.length; i++){
+            biases[i] = new double[NETWORK_LAYER_SIZES[i]];
         }
+
+        return biases;
     }
 
-    public Network(String path) throws IOException {
-        File file = new File(path);
+    public double[] calculate(double[] input) throws NetworkException {
+        return feedForward(input).clone();
+    }
 
-        if(!file.exists()) throw new FileNotFoundException("Network file not found: " + path);
+    private double[] feedForward(double[] input) throws NetworkException {
+        return feedForward(input, outputs);
+    }
 
-        BufferedReader reader = new BufferedReader(new FileReader(file));
-        String line = reader.readLine();
-        if(!line.startsWith("# Network size ")) throw new IOException("Bad header. Expected: # Network size");
-        NETWORK_SIZE = Integer.parseInt(line.substring(15));
+    private double[] feedForward(double[] input, double[][] outputs) throws NetworkException {
+        if(input.length != INPUT_SIZE) throw new NetworkException("Expected input size " + INPUT_SIZE + ", but found " + input.length);
 
-        line = reader.readLine();
-        if(!line.startsWith("# Network layer sizes ")) throw new IOException("Bad header. Expected: # Network layer sizes");
-        NETWORK_LAYER_SIZES = Arrays.stream(line.substring(22).split(" ")).mapToInt(Integer::parseInt).toArray();
-        INPUT_SIZE = NETWORK_LAYER_SIZES[0];
-        OUTPUT_SIZE = NETWORK_LAYER_SIZES[NETWORK_SIZE - 1];
+        System.arraycopy(input, 0, outputs[0], 0, INPUT_SIZE);
+        NetworkModel.feedForward(NETWORK_LAYER_SIZES, weights, biases, activations, outputs);
 
-        weights = new double[NETWORK_SIZE][][];
-        biases = new double[NETWORK_SIZE][];
-        outputs = new double[NETWORK_SIZE][];
-        errorSignals = new double[NETWORK_SIZE][];
-        for(int layer = 0; layer < NETWORK_SIZE; layer++){
-            outputs[layer] = new double[NETWORK_LAYER_SIZES[layer]];
-            errorSignals[layer] = new double[NETWORK_LAYER_SIZES[layer]];
+        return outputs[NETWORK_SIZE - 1];
+    }
 
-            if(layer == 0) continue;
+    private void calculateOutputErrorSignals(double[][] outputs, double[][] errorSignals, double[] target) throws NetworkException {
+        double[] output = outputs[NETWORK_SIZE - 1];
+        if(target.length != OUTPUT_SIZE) throw new NetworkException("Expected target size " + OUTPUT_SIZE + ", but found " + target.length);
 
-            if(!reader.readLine().equals("# Weights layer " + layer)) throw new IOException("Bad header. Expected: # Weights layer " + layer);
+        Activation outputActivation = activations[NETWORK_SIZE - 1];
+        for(int neuron = 0; neuron < OUTPUT_SIZE; neuron++){
+            errorSignals[NETWORK_SIZE - 1][neuron] = outputActivation.errorSignal(output[neuron], target[neuron]);
+        }
+    }
 
-            weights[layer] = new double[NETWORK_LAYER_SIZES[layer - 1]][];
-            for(int prevNeuron = 0; prevNeuron < NETWORK_LAYER_SIZES[layer - 1]; prevNeuron++){
-                weights[layer][prevNeuron] = Arrays.stream(reader.readLine().split(" ")).mapToDouble(Double::parseDouble).toArray();
-            }
+    private void calculateHiddenErrorSignals(int layer, double[][] outputs, double[][] errorSignals) {
+        int nextLayerNeurons = NETWORK_LAYER_SIZES[layer + 1];
+        double[] nextWeights = weights[layer + 1];
+        double[] nextErrorSignals = errorSignals[layer + 1];
+        Activation activation = activations[layer];
+
+        for(int neuron = 0; neuron < NETWORK_LAYER_SIZES[layer]; neuron++){
+            int offset = neuron * nextLayerNeurons;
 
-            if(!reader.readLine().equals("# Biases layer " + layer)) throw new IOException("Bad header. Expected: # Biases layer " + layer);
+            double weightedErrorSignalsSum = 0d;
+            for(int nextNeuron = 0; nextNeuron < nextLayerNeurons; nextNeuron++){
+                weightedErrorSignalsSum += nextWeights[offset + nextNeuron] * nextErrorSignals[nextNeuron];
+            }
 
-            biases[layer] = Arrays.stream(reader.readLine().split(" ")).mapToDouble(Double::parseDouble).toArray();
+            errorSignals[layer][neuron] = activation.derivative(outputs[layer][neuron]) * weightedErrorSignalsSum;
         }
     }
 
-    public double[] calculate(double[] input) throws NetworkException {
-        if(input.length != INPUT_SIZE) throw new NetworkException("Expected input size " + INPUT_SIZE + ", but found " + input.length);
+    // Every error signal is computed before the first weight changes. As in accumulateGradients,
+    // a layer's backward time is its error signals plus its update.
+    private void updateWeightsAndBiases(double learningRate){
+        long start = NetworkMetrics.ENABLED ? System.nanoTime() : 0;
+        for(int layer = NETWORK_SIZE - 2; layer >= 1; layer--){
+            calculateHiddenErrorSignals(layer, outputs, errorSignals);
+
+            if(NetworkMetrics.ENABLED){
+                long now = System.nanoTime();
+                backwardNanos[layer] = now - start;
+                start = now;
+            }
+        }
 
-        outputs[0] = Arrays.copyOf(input, INPUT_SIZE);
         for(int layer = 1; layer < NETWORK_SIZE; layer++){
             int neurons = NETWORK_LAYER_SIZES[layer];
+            double[] layerWeights = weights[layer];
+            double[] prevOutputs = outputs[layer - 1];
 
             for(int neuron = 0; neuron < neurons; neuron++){
-                int prevLayerNeurons = NETWORK_LAYER_SIZES[layer - 1];
+                deltas[neuron] = learningRate * errorSignals[layer][neuron];
+                biases[layer][neuron] -= deltas[neuron];
+            }
 
-                double sum = biases[layer][neuron];
-                for(int prevNeuron = 0; prevNeuron < prevLayerNeurons; prevNeuron++){
-                    sum += outputs[layer - 1][prevNeuron] * weights[layer][prevNeuron][neuron];
-                }
-                outputs[layer][neuron] = sigmoid(sum);
+            for(int prevNeuron = 0; prevNeuron < NETWORK_LAYER_SIZES[layer - 1]; prevNeuron++){
+                double prevOutput = prevOutputs[prevNeuron];
+                if(prevOutput == 0) continue;
+
+                DenseKernels.INSTANCE.axpy(-prevOutput, deltas, 0, layerWeights, prevNeuron * neurons, neurons);
             }
-        }
 
-        return outputs[NETWORK_SIZE - 1];
+            if(NetworkMetrics.ENABLED){
+                long now = System.nanoTime();
+                NetworkMetrics.INSTANCE.recordBackward(layer, backwardNanos[layer] + now - start);
+                start = now;
+            }
+        }
     }
 
-    private void calculateErrorSignals(double[] output, double[] target) throws NetworkException {
-        if(output.length != OUTPUT_SIZE) throw new NetworkException("Expected output size " + OUTPUT_SIZE + ", but found " + output.length);
-        if(target.length != OUTPUT_SIZE) throw new NetworkException("Expected target size " + OUTPUT_SIZE + ", but found " + target.length);
+    // Only reads weights and biases, so several threads may accumulate into their own buffers at once.
+    void accumulateGradients(double[] input, double[] target, GradientBuffer buffer) throws NetworkException {
+        feedForward(input, buffer.outputs);
+        calculateOutputErrorSignals(buffer.outputs, buffer.errorSignals, target);
+        if(NetworkMetrics.ENABLED) NetworkMetrics.INSTANCE.recordSample(buffer.outputs[NETWORK_SIZE - 1], target, activations[NETWORK_SIZE - 1]);
 
-        for(int neuron = 0; neuron < OUTPUT_SIZE; neuron++){
-            errorSignals[NETWORK_SIZE - 1][neuron] = (output[neuron] - target[neuron]) * output[neuron] * (1 - output[neuron]);
-        }
+        // Layers go backwards, so the error signals of a layer are computed right before its
+        // gradients and both count as that layer's backward time.
+        long start = NetworkMetrics.ENABLED ? System.nanoTime() : 0;
+        for(int layer = NETWORK_SIZE - 1; layer >= 1; layer--){
+            if(layer < NETWORK_SIZE - 1) calculateHiddenErrorSignals(layer, buffer.outputs, buffer.errorSignals);
 
-        for(int layer = NETWORK_SIZE - 2; layer >= 1; layer--){
-            for(int neuron = 0; neuron < NETWORK_LAYER_SIZES[layer]; neuron++){
-                double weightedErrorSignalsSum = 0d;
-                for(int nextNeuron = 0; nextNeuron < NETWORK_LAYER_SIZES[layer + 1]; nextNeuron++){
-                    weightedErrorSignalsSum += weights[layer + 1][neuron][nextNeuron] * errorSignals[layer + 1][nextNeuron];
-                }
+            int neurons = NETWORK_LAYER_SIZES[layer];
+            double[] layerErrorSignals = buffer.errorSignals[layer];
+            double[] layerGradients = buffer.weightGradients[layer];
+            double[] prevOutputs = buffer.outputs[layer - 1];
 
-                errorSignals[layer][neuron] = outputs[layer][neuron] * (1 - outputs[layer][neuron]) * weightedErrorSignalsSum;
+            for(int neuron = 0; neuron < neurons; neuron++){
+                buffer.biasGradients[layer][neuron] += layerErrorSignals[neuron];
+            }
+
+            for(int prevNeuron = 0; prevNeuron < NETWORK_LAYER_SIZES[layer - 1]; prevNeuron++){
+                double prevOutput = prevOutputs[prevNeuron];
+                if(prevOutput == 0) continue;
+
+                DenseKernels.INSTANCE.axpy(prevOutput, layerErrorSignals, 0, layerGradients, prevNeuron * neurons, neurons);
+            }
+
+            if(NetworkMetrics.ENABLED){
+                long now = System.nanoTime();
+                NetworkMetrics.INSTANCE.recordBackward(layer, now - start);
+                start = now;
             }
         }
+
+        buffer.samples++;
     }
 
-    private void updateWeightsAndBiases(double learningRate){
-        for(int layer = 1; layer < NETWORK_SIZE; layer++){
-            for(int neuron = 0; neuron < NETWORK_LAYER_SIZES[layer]; neuron++){
-                biases[layer][neuron] -= learningRate * errorSignals[layer][neuron];
+    void applyGradients(GradientBuffer buffer, double learningRate) {
+        if(buffer.samples == 0) return;
 
-                for(int prevNeuron = 0; prevNeuron < NETWORK_LAYER_SIZES[layer - 1]; prevNeuron++){
-                    weights[layer][prevNeuron][neuron] -= learningRate * errorSignals[layer][neuron] * outputs[layer - 1][prevNeuron];
-                }
-            }
+        // The optimizer clears the gradients as it reads them.
+        optimizer.step(weights, buffer.weightGradients, biases, buffer.biasGradients, buffer.samples, learningRate);
+        buffer.samples = 0;
+    }
+
+    GradientBuffer newGradientBuffer() {
+        return new GradientBuffer(NETWORK_LAYER_SIZES);
+    }
+
+    /**
+     * Adds the gradient of one sample to the pending mini-batch without touching the weights.
+     */
+    public void accumulateGradients(double[] input, double[] target) throws NetworkException {
+        if(gradients == null) gradients = newGradientBuffer();
+
+        accumulateGradients(input, target, gradients);
+    }
+
+    /**
+     * Applies the average gradient of every sample accumulated since the last call.
+     */
+    public void applyGradients(double learningRate) {
+        if(gradients != null) applyGradients(gradients, learningRate);
+    }
+
+    public void train(double[][] inputs, double[][] targets, double learningRate) throws NetworkException {
+        if(inputs.length != targets.length) throw new NetworkException("Expected one target per input, but found " + inputs.length + " inputs and " + targets.length + " targets");
+
+        long allocated = NetworkMetrics.ENABLED ? NetworkMetrics.INSTANCE.allocatedBytes() : 0;
+        for(int i = 0; i < inputs.length; i++){
+            accumulateGradients(inputs[i], targets[i]);
         }
+
+        applyGradients(learningRate);
+        if(NetworkMetrics.ENABLED) NetworkMetrics.INSTANCE.recordStep(allocated);
     }
 
     public void train(double[] input, double[] target, double learningRate) throws NetworkException {
         if(input.length != INPUT_SIZE) throw new NetworkException("Expected inputs size " + INPUT_SIZE + ", but found " + input.length);
 
-        double[] output = calculate(input);
-        calculateErrorSignals(output, target);
-        updateWeightsAndBiases(learningRate);
+        long allocated = NetworkMetrics.ENABLED ? NetworkMetrics.INSTANCE.allocatedBytes() : 0;
+        if(optimizer.isPlainSgd()){
+            feedForward(input);
+            calculateOutputErrorSignals(outputs, errorSignals, target);
+            if(NetworkMetrics.ENABLED) NetworkMetrics.INSTANCE.recordSample(outputs[NETWORK_SIZE - 1], target, activations[NETWORK_SIZE - 1]);
+            updateWeightsAndBiases(learningRate);
+        }else{
+            accumulateGradients(input, target);
+            applyGradients(learningRate);
+        }
+        if(NetworkMetrics.ENABLED) NetworkMetrics.INSTANCE.recordStep(allocated);
     }
 
-    private double sigmoid(double sum) {
-        return 1d / (1 + Math.exp(-sum));
+    public Optimizer getOptimizer() {
+        return optimizer;
     }
 
-    public void save(String path) throws IOException {
-        File file = new File(path);
-        file.createNewFile();
+    /**
+     * Uses {@code optimizer} for every following update. Its state is allocated here, or checked
+     * against the layer sizes if it has some already; an optimizer belongs to one network.
+     */
+    public void setOptimizer(Optimizer optimizer) {
+        optimizer.attach(weights, biases);
+        this.optimizer = optimizer;
+    }
 
-        BufferedWriter writer = new BufferedWriter(new FileWriter(file));
+    /**
+     * A copy of the optimizer, state included, that later training steps do not touch.
+     */
+    Optimizer snapshotOptimizer() {
+        return optimizer.copy();
+    }
 
-        writer.write("# Network size " + NETWORK_SIZE + "\n");
-        writer.write("# Network layer sizes ");
-        for(int size : NETWORK_LAYER_SIZES) writer.write(size + " ");
-        writer.write("\n");
+    public int[] getLayerSizes() {
+        return NETWORK_LAYER_SIZES.clone();
+    }
 
-        for(int layer = 1; layer < NETWORK_SIZE; layer++){
-            writer.write("# Weights layer " + layer + "\n");
+    public int getOutputSize() {
+        return OUTPUT_SIZE;
+    }
 
-            for(int prevNeuron = 0; prevNeuron < NETWORK_LAYER_SIZES[layer - 1]; prevNeuron++){
-                for(int neuron = 0; neuron < NETWORK_LAYER_SIZES[layer]; neuron++){
-                    writer.write(weights[layer][prevNeuron][neuron] + " ");
-                }
+    public Activation[] getActivations() {
+        return activations.clone();
+    }
 
-                writer.write("\n");
-            }
+    public NetworkModel toModel() {
+        return new NetworkModel(toParameters());
+    }
 
-            writer.write("# Biases layer " + layer + "\n");
-            for(int neuron = 0; neuron < NETWORK_LAYER_SIZES[layer]; neuron++){
-                writer.write(biases[layer][neuron] + " ");
-            }
+    private NetworkParameters toParameters() {
+        return new NetworkParameters(NETWORK_LAYER_SIZES, weights, biases, activations);
+    }
+
+    /**
+     * A network with a copy of the current parameters and a fresh plain SGD optimizer.
+     */
+    Network copy() {
+        return new Network(snapshot());
+    }
 
-            writer.write("\n");
+    /**
+     * A copy of the current parameters that later training steps do not touch.
+     */
+    NetworkParameters snapshot() {
+        double[][] weightsCopy = new double[NETWORK_SIZE][];
+        double[][] biasesCopy = new double[NETWORK_SIZE][];
+        for(int layer = 1; layer < NETWORK_SIZE; layer++){
+            weightsCopy[layer] = weights[layer].clone();
+            biasesCopy[layer] = biases[layer].clone();
         }
 
-        writer.close();
+        return new NetworkParameters(NETWORK_LAYER_SIZES, weightsCopy, biasesCopy, activations);
+    }
+
+    private int maxLayerSize() {
+        return Arrays.stream(NETWORK_LAYER_SIZES).max().orElse(0);
+    }
+
+    public void save(String path) throws IOException {
+        ModelFile.writeText(path, toParameters());
+        saveOptimizer(path);
+    }
+
+    public void saveBinary(String path) throws IOException {
+        saveBinary(path, false);
+    }
+
+    public void saveBinary(String path, boolean singlePrecision) throws IOException {
+        ModelFile.writeBinary(path, toParameters(), singlePrecision);
+        saveOptimizer(path);
+    }
+
+    // Plain SGD has nothing to resume, so a stale state file from an earlier run is removed instead.
+    private void saveOptimizer(String path) throws IOException {
+        String stateFile = Optimizer.stateFile(path);
+        if(optimizer.isPlainSgd()) Files.deleteIfExists(Path.of(stateFile));
+        else optimizer.save(stateFile);
     }
 }
\ No newline at end of file
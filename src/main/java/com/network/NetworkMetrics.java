@@ -0,0 +1,293 @@
+package com.network;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Training and inference instrumentation: per-layer forward and backward time, training
+ * samples per second, loss and accuracy of the current epoch, and bytes allocated by the
+ * training thread per optimizer step.
+ * <p>
+ * Collection is switched on at startup with {@code -Dnetwork.metrics=true}. {@link #ENABLED}
+ * is a constant, so when it is false the JIT removes every instrumentation point. When it is
+ * true the metrics are registered with JMX as {@code com.network:type=NetworkMetrics} and
+ * logged as one {@code key=value} line every {@code network.metrics.period} seconds
+ * (default 10, 0 disables the log line).
+ */
+public final class NetworkMetrics implements NetworkMetricsMXBean {
+    public static final boolean ENABLED = Boolean.getBoolean("network.metrics");
+    static final NetworkMetrics INSTANCE = ENABLED ? new NetworkMetrics() : null;
+
+    private static final int MAX_LAYERS = 64;
+
+    private final AtomicReferenceArray<LatencyHistogram> forward = new AtomicReferenceArray<>(MAX_LAYERS);
+    private final AtomicReferenceArray<LatencyHistogram> backward = new AtomicReferenceArray<>(MAX_LAYERS);
+    private final LongAdder samples = new LongAdder();
+    private final LongAdder steps = new LongAdder();
+    private final LongAdder allocatedBytes = new LongAdder();
+    private final DoubleAdder epochLoss = new DoubleAdder();
+    private final LongAdder epochSamples = new LongAdder();
+    private final LongAdder epochCorrect = new LongAdder();
+    private final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private volatile int epoch = -1;
+    private volatile double lastEpochLoss = Double.NaN;
+    private volatile double lastEpochAccuracy = Double.NaN;
+    private volatile long startNanos = System.nanoTime();
+
+    private NetworkMetrics() {
+        try{
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName("com.network:type=NetworkMetrics"));
+        }catch(JMException e){
+            System.err.println("Could not register network metrics with JMX: " + e.getMessage());
+        }
+
+        long period = Long.getLong("network.metrics.period", 10);
+        if(period > 0){
+            Thread reporter = new Thread(() -> report(period), "network-metrics");
+            reporter.setDaemon(true);
+            reporter.start();
+        }
+    }
+
+    /**
+     * The collected metrics, or null when {@link #ENABLED} is false.
+     */
+    public static NetworkMetrics get() {
+        return INSTANCE;
+    }
+
+    void recordForward(int layer, long nanos) {
+        histogram(forward, layer).record(nanos);
+    }
+
+    /**
+     * Records one layer of a batched forward pass as {@code samples} passes of equal length.
+     */
+    void recordForward(int layer, long nanos, int samples) {
+        histogram(forward, layer).record(nanos / samples, samples);
+    }
+
+    void recordBackward(int layer, long nanos) {
+        histogram(backward, layer).record(nanos);
+    }
+
+    /**
+     * Counts one training sample. Softmax outputs are scored with cross-entropy, all others
+     * with the mean squared error.
+     */
+    void recordSample(double[] output, double[] target, Activation outputActivation) {
+        double loss = 0;
+        if(outputActivation == Activation.SOFTMAX){
+            for(int i = 0; i < output.length; i++){
+                if(target[i] != 0) loss -= target[i] * Math.log(Math.max(output[i], 1e-12));
+            }
+        }else{
+            for(int i = 0; i < output.length; i++){
+                double error = output[i] - target[i];
+                loss += error * error;
+            }
+            loss /= output.length;
+        }
+
+        samples.increment();
+        epochSamples.increment();
+        epochLoss.add(loss);
+        if(InferenceModel.argMax(output) == InferenceModel.argMax(target)) epochCorrect.increment();
+    }
+
+    /**
+     * Bytes allocated so far by the calling thread, for {@link #recordStep(long)}.
+     */
+    long allocatedBytes() {
+        return threads.getCurrentThreadAllocatedBytes();
+    }
+
+    /**
+     * Counts one optimizer step whose training thread had allocated {@code allocatedBefore}
+     * bytes when the step started.
+     */
+    void recordStep(long allocatedBefore) {
+        steps.increment();
+        allocatedBytes.add(allocatedBytes() - allocatedBefore);
+    }
+
+    void epochStarted(int epoch) {
+        epochLoss.reset();
+        epochSamples.reset();
+        epochCorrect.reset();
+        this.epoch = epoch;
+    }
+
+    void epochFinished() {
+        lastEpochLoss = getEpochLoss();
+        lastEpochAccuracy = getEpochAccuracy();
+        System.out.println(String.format(Locale.ROOT, "metrics event=epoch epoch=%d loss=%.5f accuracy=%.4f", epoch, lastEpochLoss, lastEpochAccuracy));
+    }
+
+    @Override
+    public long getTrainingSamples() {
+        return samples.sum();
+    }
+
+    @Override
+    public double getSamplesPerSecond() {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        return seconds > 0 ? samples.sum() / seconds : 0;
+    }
+
+    @Override
+    public long getSteps() {
+        return steps.sum();
+    }
+
+    @Override
+    public double getAllocatedBytesPerStep() {
+        long count = steps.sum();
+        return count == 0 ? 0 : (double) allocatedBytes.sum() / count;
+    }
+
+    @Override
+    public int getEpoch() {
+        return epoch;
+    }
+
+    @Override
+    public double getEpochLoss() {
+        long count = epochSamples.sum();
+        return count == 0 ? Double.NaN : epochLoss.sum() / count;
+    }
+
+    @Override
+    public double getEpochAccuracy() {
+        long count = epochSamples.sum();
+        return count == 0 ? Double.NaN : (double) epochCorrect.sum() / count;
+    }
+
+    @Override
+    public double getLastEpochLoss() {
+        return lastEpochLoss;
+    }
+
+    @Override
+    public double getLastEpochAccuracy() {
+        return lastEpochAccuracy;
+    }
+
+    @Override
+    public long getForwardPasses() {
+        LatencyHistogram first = forward.get(1);
+        return first == null ? 0 : first.getCount();
+    }
+
+    @Override
+    public double[] getForwardMeanMicros() {
+        return means(forward);
+    }
+
+    @Override
+    public double[] getForwardP99Micros() {
+        return percentiles(forward, 99);
+    }
+
+    @Override
+    public double[] getBackwardMeanMicros() {
+        return means(backward);
+    }
+
+    @Override
+    public double[] getBackwardP99Micros() {
+        return percentiles(backward, 99);
+    }
+
+    @Override
+    public void reset() {
+        for(int layer = 0; layer < MAX_LAYERS; layer++){
+            if(forward.get(layer) != null) forward.get(layer).reset();
+            if(backward.get(layer) != null) backward.get(layer).reset();
+        }
+        samples.reset();
+        steps.reset();
+        allocatedBytes.reset();
+        startNanos = System.nanoTime();
+    }
+
+    private static LatencyHistogram histogram(AtomicReferenceArray<LatencyHistogram> histograms, int layer) {
+        LatencyHistogram histogram = histograms.get(layer);
+        if(histogram == null){
+            histograms.compareAndSet(layer, null, new LatencyHistogram());
+            histogram = histograms.get(layer);
+        }
+
+        return histogram;
+    }
+
+    private static int layers(AtomicReferenceArray<LatencyHistogram> histograms) {
+        int layers = 0;
+        for(int layer = 0; layer < MAX_LAYERS; layer++){
+            if(histograms.get(layer) != null) layers = layer + 1;
+        }
+
+        return layers;
+    }
+
+    private static double[] means(AtomicReferenceArray<LatencyHistogram> histograms) {
+        double[] means = new double[layers(histograms)];
+        for(int layer = 0; layer < means.length; layer++){
+            LatencyHistogram histogram = histograms.get(layer);
+            if(histogram != null) means[layer] = histogram.getMean() / 1e3;
+        }
+
+        return means;
+    }
+
+    private static double[] percentiles(AtomicReferenceArray<LatencyHistogram> histograms, double percentile) {
+        double[] values = new double[layers(histograms)];
+        for(int layer = 0; layer < values.length; layer++){
+            LatencyHistogram histogram = histograms.get(layer);
+            if(histogram != null) values[layer] = histogram.getPercentile(percentile) / 1e3;
+        }
+
+        return values;
+    }
+
+    private void report(long periodSeconds) {
+        long lastSamples = 0;
+        long lastNanos = System.nanoTime();
+        try{
+            while(true){
+                Thread.sleep(periodSeconds * 1000);
+
+                long now = System.nanoTime();
+                long currentSamples = samples.sum();
+                double rate = (currentSamples - lastSamples) / ((now - lastNanos) / 1e9);
+                lastSamples = currentSamples;
+                lastNanos = now;
+
+                System.out.println(String.format(Locale.ROOT,
+                        "metrics samples=%d samples_per_s=%.1f steps=%d alloc_per_step=%.0f epoch=%d loss=%.5f accuracy=%.4f forward_passes=%d forward_mean_us=%s forward_p99_us=%s backward_mean_us=%s backward_p99_us=%s",
+                        currentSamples, Math.max(0, rate), steps.sum(), getAllocatedBytesPerStep(), epoch, getEpochLoss(), getEpochAccuracy(), getForwardPasses(),
+                        format(getForwardMeanMicros()), format(getForwardP99Micros()), format(getBackwardMeanMicros()), format(getBackwardP99Micros())));
+            }
+        }catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Layer 0 never has timings, so it is left out of the log line.
+    private static String format(double[] values) {
+        double[] layers = values.length > 1 ? Arrays.copyOfRange(values, 1, values.length) : new double[0];
+        StringBuilder text = new StringBuilder("[");
+        for(int i = 0; i < layers.length; i++){
+            if(i > 0) text.append(',');
+            text.append(String.format(Locale.ROOT, "%.2f", layers[i]));
+        }
+
+        return text.append(']').toString();
+    }
+}
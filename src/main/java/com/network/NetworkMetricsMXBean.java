@@ -0,0 +1,37 @@
+package com.network;
+
+/**
+ * JMX view of {@link NetworkMetrics}, registered as {@code com.network:type=NetworkMetrics}.
+ * Per-layer arrays are indexed by layer, so index 0, the input layer, is always 0.
+ */
+public interface NetworkMetricsMXBean {
+    long getTrainingSamples();
+
+    double getSamplesPerSecond();
+
+    long getSteps();
+
+    double getAllocatedBytesPerStep();
+
+    int getEpoch();
+
+    double getEpochLoss();
+
+    double getEpochAccuracy();
+
+    double getLastEpochLoss();
+
+    double getLastEpochAccuracy();
+
+    long getForwardPasses();
+
+    double[] getForwardMeanMicros();
+
+    double[] getForwardP99Micros();
+
+    double[] getBackwardMeanMicros();
+
+    double[] getBackwardP99Micros();
+
+    void reset();
+}
@@ -0,0 +1,255 @@
+package com.network;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Read-only snapshot of a trained {@link Network}. All state is fixed at construction,
+ * so one instance can be shared by any number of threads as long as each thread scores
+ * into its own {@link NetworkWorkspace}.
+ */
+public final class NetworkModel implements InferenceModel {
+    private static final int BATCH_TILE = 32;
+    private static final int WEIGHT_BLOCK_SIZE = 2048;
+    private final int[] NETWORK_LAYER_SIZES;
+    private final int NETWORK_SIZE;
+    private final int INPUT_SIZE;
+    private final int OUTPUT_SIZE;
+    private final double[][] weights;
+    private final double[][] biases;
+    private final Activation[] activations;
+    private final ThreadLocal<NetworkWorkspace> workspaces = ThreadLocal.withInitial(this::newWorkspace);
+
+    NetworkModel(int[] NETWORK_LAYER_SIZES, double[][] weights, double[][] biases, Activation[] activations) {
+        this.NETWORK_LAYER_SIZES = NETWORK_LAYER_SIZES.clone();
+        this.NETWORK_SIZE = NETWORK_LAYER_SIZES.length;
+        this.INPUT_SIZE = NETWORK_LAYER_SIZES[0];
+        this.OUTPUT_SIZE = NETWORK_LAYER_SIZES[NETWORK_SIZE - 1];
+
+        this.weights = new double[NETWORK_SIZE][];
+        this.biases = new double[NETWORK_SIZE][];
+        for(int layer = 1; layer < NETWORK_SIZE; layer++){
+            this.weights[layer] = weights[layer].clone();
+            this.biases[layer] = biases[layer].clone();
+        }
+        this.activations = activations.clone();
+    }
+
+    NetworkModel(NetworkParameters parameters) {
+        this(parameters.layerSizes, parameters.weights, parameters.biases, parameters.activations);
+    }
+
+    /**
+     * Loads a model directly from a text or binary network file.
+     */
+    public static NetworkModel load(String path) throws IOException {
+        return new NetworkModel(ModelFile.read(path));
+    }
+
+    /**
+     * Loads a model from a stream holding a text or binary network file, such as a classpath
+     * resource, which cannot be memory-mapped. {@code name} is used in error messages.
+     */
+    public static NetworkModel load(InputStream in, String name) throws IOException {
+        return new NetworkModel(ModelFile.read(in, name));
+    }
+
+    public NetworkWorkspace newWorkspace() {
+        return new NetworkWorkspace(NETWORK_LAYER_SIZES);
+    }
+
+    /**
+     * Scores {@code input} using the caller's workspace. The returned array belongs to the
+     * workspace and is overwritten by its next use.
+     */
+    public double[] calculate(double[] input, NetworkWorkspace workspace) throws NetworkException {
+        if(input.length != INPUT_SIZE) throw new NetworkException("Expected input size " + INPUT_SIZE + ", but found " + input.length);
+        if(!workspace.fits(NETWORK_LAYER_SIZES)) throw new NetworkException("Workspace was created for a different network shape");
+
+        double[][] outputs = workspace.outputs;
+        System.arraycopy(input, 0, outputs[0], 0, INPUT_SIZE);
+        feedForward(NETWORK_LAYER_SIZES, weights, biases, activations, outputs);
+
+        return outputs[NETWORK_SIZE - 1];
+    }
+
+    /**
+     * Scores {@code input} into the caller's {@code output} array using a workspace owned by
+     * the current thread.
+     */
+    @Override
+    public void calculate(double[] input, double[] output) throws NetworkException {
+        if(output.length != OUTPUT_SIZE) throw new NetworkException("Expected output size " + OUTPUT_SIZE + ", but found " + output.length);
+
+        System.arraycopy(calculate(input, workspaces.get()), 0, output, 0, OUTPUT_SIZE);
+    }
+
+    @Override
+    public int predict(double[] input) throws NetworkException {
+        return InferenceModel.argMax(calculate(input, workspaces.get()));
+    }
+
+    public FloatNetworkModel toFloatModel() {
+        return new FloatNetworkModel(NETWORK_LAYER_SIZES, weights, biases, activations);
+    }
+
+    /**
+     * Quantizes the model to int8. Every layer must produce outputs in [0, 1], so tanh and
+     * ReLU networks are rejected.
+     */
+    public QuantizedNetworkModel toQuantizedModel() throws NetworkException {
+        return new QuantizedNetworkModel(NETWORK_LAYER_SIZES, weights, biases, activations);
+    }
+
+    /**
+     * Scores every row of {@code inputs} and returns one output row per input. Inputs are
+     * processed in tiles of {@value #BATCH_TILE} samples, so each block of weights is
+     * reused from cache across the whole tile. Results are identical to scoring one by one.
+     */
+    public double[][] calculateBatch(double[][] inputs) throws NetworkException {
+        double[][] results = new double[inputs.length][OUTPUT_SIZE];
+        double[][] tile = workspaces.get().tile(BATCH_TILE);
+
+        for(int start = 0; start < inputs.length; start += BATCH_TILE){
+            int count = Math.min(BATCH_TILE, inputs.length - start);
+            for(int sample = 0; sample < count; sample++){
+                double[] input = inputs[start + sample];
+                if(input.length != INPUT_SIZE) throw new NetworkException("Expected input size " + INPUT_SIZE + ", but found " + input.length);
+
+                System.arraycopy(input, 0, tile[0], sample * INPUT_SIZE, INPUT_SIZE);
+            }
+
+            feedForwardBatch(tile, count);
+            for(int sample = 0; sample < count; sample++){
+                System.arraycopy(tile[NETWORK_SIZE - 1], sample * OUTPUT_SIZE, results[start + sample], 0, OUTPUT_SIZE);
+            }
+        }
+
+        return results;
+    }
+
+    /**
+     * Flat variant of {@link #calculateBatch(double[][])}: {@code inputs} holds {@code count}
+     * row-major samples and {@code outputs} receives {@code count} row-major results. Uses a
+     * workspace owned by the current thread, so it does not allocate.
+     */
+    public void calculateBatch(double[] inputs, double[] outputs, int count) throws NetworkException {
+        calculateBatch(inputs, outputs, count, workspaces.get());
+    }
+
+    /**
+     * Like {@link #calculateBatch(double[], double[], int)}, but with the tile buffers of the
+     * caller's workspace.
+     */
+    public void calculateBatch(double[] inputs, double[] outputs, int count, NetworkWorkspace workspace) throws NetworkException {
+        if(!workspace.fits(NETWORK_LAYER_SIZES)) throw new NetworkException("Workspace was created for a different network shape");
+        if(inputs.length < count * INPUT_SIZE) throw new NetworkException("Expected at least " + count * INPUT_SIZE + " input values, but found " + inputs.length);
+        if(outputs.length < count * OUTPUT_SIZE) throw new NetworkException("Expected at least " + count * OUTPUT_SIZE + " output values, but found " + outputs.length);
+
+        double[][] tile = workspace.tile(BATCH_TILE);
+        for(int start = 0; start < count; start += BATCH_TILE){
+            int tileCount = Math.min(BATCH_TILE, count - start);
+
+            System.arraycopy(inputs, start * INPUT_SIZE, tile[0], 0, tileCount * INPUT_SIZE);
+            feedForwardBatch(tile, tileCount);
+            System.arraycopy(tile[NETWORK_SIZE - 1], 0, outputs, start * OUTPUT_SIZE, tileCount * OUTPUT_SIZE);
+        }
+    }
+
+    private void feedForwardBatch(double[][] outputs, int count) {
+        long start = NetworkMetrics.ENABLED ? System.nanoTime() : 0;
+        for(int layer = 1; layer < NETWORK_SIZE; layer++){
+            int neurons = NETWORK_LAYER_SIZES[layer];
+            int prevLayerNeurons = NETWORK_LAYER_SIZES[layer - 1];
+            double[] layerWeights = weights[layer];
+            double[] prevOutputs = outputs[layer - 1];
+            double[] sums = outputs[layer];
+
+            for(int sample = 0; sample < count; sample++){
+                System.arraycopy(biases[layer], 0, sums, sample * neurons, neurons);
+            }
+
+            // Blocked GEMM: a block of weight rows small enough for L1 is reused by every sample
+            // of the tile before moving on. Each sum still accumulates in prevNeuron order, as in
+            // feedForward.
+            int blockRows = Math.max(1, WEIGHT_BLOCK_SIZE / neurons);
+            for(int blockStart = 0; blockStart < prevLayerNeurons; blockStart += blockRows){
+                int blockEnd = Math.min(blockStart + blockRows, prevLayerNeurons);
+
+                for(int sample = 0; sample < count; sample++){
+                    int inputOffset = sample * prevLayerNeurons;
+                    int sumOffset = sample * neurons;
+
+                    for(int prevNeuron = blockStart; prevNeuron < blockEnd; prevNeuron++){
+                        double prevOutput = prevOutputs[inputOffset + prevNeuron];
+                        if(prevOutput == 0) continue;
+
+                        DenseKernels.INSTANCE.axpy(prevOutput, layerWeights, prevNeuron * neurons, sums, sumOffset, neurons);
+                    }
+                }
+            }
+
+            for(int sample = 0; sample < count; sample++){
+                activations[layer].apply(sums, sample * neurons, neurons);
+            }
+
+            if(NetworkMetrics.ENABLED){
+                long now = System.nanoTime();
+                NetworkMetrics.INSTANCE.recordForward(layer, now - start, count);
+                start = now;
+            }
+        }
+    }
+
+    public int[] getLayerSizes() {
+        return NETWORK_LAYER_SIZES.clone();
+    }
+
+    public Activation[] getActivations() {
+        return activations.clone();
+    }
+
+    @Override
+    public int getInputSize() {
+        return INPUT_SIZE;
+    }
+
+    @Override
+    public int getOutputSize() {
+        return OUTPUT_SIZE;
+    }
+
+    static void feedForward(int[] NETWORK_LAYER_SIZES, double[][] weights, double[][] biases, Activation[] activations, double[][] outputs) {
+        long start = NetworkMetrics.ENABLED ? System.nanoTime() : 0;
+        for(int layer = 1; layer < NETWORK_LAYER_SIZES.length; layer++){
+            int neurons = NETWORK_LAYER_SIZES[layer];
+            int prevLayerNeurons = NETWORK_LAYER_SIZES[layer - 1];
+            double[] layerWeights = weights[layer];
+            double[] prevOutputs = outputs[layer - 1];
+            double[] sums = outputs[layer];
+
+            // Weights are stored [prevNeuron][neuron], so each previous output is spread over one contiguous row.
+            System.arraycopy(biases[layer], 0, sums, 0, neurons);
+            for(int prevNeuron = 0; prevNeuron < prevLayerNeurons; prevNeuron++){
+                double prevOutput = prevOutputs[prevNeuron];
+                if(prevOutput == 0) continue;
+
+                DenseKernels.INSTANCE.axpy(prevOutput, layerWeights, prevNeuron * neurons, sums, 0, neurons);
+            }
+
+            activations[layer].apply(sums, 0, neurons);
+
+            if(NetworkMetrics.ENABLED){
+                long now = System.nanoTime();
+                NetworkMetrics.INSTANCE.recordForward(layer, now - start);
+                start = now;
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "NetworkModel" + Arrays.toString(NETWORK_LAYER_SIZES);
+    }
+}
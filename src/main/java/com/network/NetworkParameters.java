@@ -0,0 +1,50 @@
+package com.network;
+
+/**
+ * Layer sizes, activations, weights and biases of a network as they are read from or written
+ * to a model file. Weights of each layer are stored flat in [prevNeuron][neuron] order, and
+ * {@code activations[0]} is unused like the input layer's weights.
+ */
+final class NetworkParameters {
+    final int[] layerSizes;
+    final double[][] weights;
+    final double[][] biases;
+    final Activation[] activations;
+
+    NetworkParameters(int[] layerSizes, double[][] weights, double[][] biases) {
+        this(layerSizes, weights, biases, defaultActivations(layerSizes.length));
+    }
+
+    NetworkParameters(int[] layerSizes, double[][] weights, double[][] biases, Activation[] activations) {
+        this.layerSizes = layerSizes;
+        this.weights = weights;
+        this.biases = biases;
+        this.activations = activations;
+    }
+
+    static Activation[] defaultActivations(int layers) {
+        Activation[] activations = new Activation[layers];
+        for(int layer = 1; layer < layers; layer++){
+            activations[layer] = Activation.SIGMOID;
+        }
+
+        return activations;
+    }
+
+    /**
+     * Checks that there is one activation per layer and that softmax, which is trained with
+     * cross-entropy against the output, only appears on the output layer.
+     */
+    static Activation[] checkActivations(Activation[] activations, int layers) {
+        if(activations.length != layers) throw new IllegalArgumentException("Expected " + layers + " activations, but found " + activations.length);
+
+        Activation[] res = activations.clone();
+        res[0] = null;
+        for(int layer = 1; layer < layers; layer++){
+            if(res[layer] == null) throw new IllegalArgumentException("Missing activation of layer " + layer);
+            if(res[layer] == Activation.SOFTMAX && layer < layers - 1) throw new IllegalArgumentException("Softmax is only supported on the output layer");
+        }
+
+        return res;
+    }
+}
@@ -1,17 +1,18 @@
 package com.network;
 
 import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
 
 public class NetworkTools {
-    public static double[][][] xavierInitialization(int[] NETWORK_LAYER_SIZES){
+    public static double[][] xavierInitialization(int[] NETWORK_LAYER_SIZES){
         int NETWORK_SIZE = NETWORK_LAYER_SIZES.length;
-        double[][][] weights = new double[NETWORK_SIZE][][];
+        double[][] weights = new double[NETWORK_SIZE][];
         for(int i = 1; i < NETWORK_SIZE; i++){
             double a = Math.sqrt(6.0 / (NETWORK_LAYER_SIZES[i - 1] + NETWORK_LAYER_SIZES[i]));
-            weights[i] = createRandom2DArray(   NETWORK_LAYER_SIZES[i - 1],
-                                                NETWORK_LAYER_SIZES[i],
-                                                -4 * a,
-                                                4 * a);
+            weights[i] = createRandomArray( NETWORK_LAYER_SIZES[i - 1] * NETWORK_LAYER_SIZES[i],
+                                            -4 * a,
+                                            4 * a);
         }
 
         return weights;
@@ -49,60 +50,294 @@ public class NetworkTools {
     }
 
     public static void trainMnist(Network network, int epochs, double learningRate) throws IOException, NetworkException {
-        double[][] trainImages = MnistReader.loadImages("src\\main\\resources\\com\\mnist\\train-images.idx3-ubyte");
-        int[] trainLabels = MnistReader.loadLabels("src\\main\\resources\\com\\mnist\\train-labels.idx1-ubyte");
+        trainMnist(network, epochs, learningRate, 1, new Random().nextLong());
+    }
+
+    public static void trainMnist(Network network, int epochs, double learningRate, int batchSize, long seed) throws IOException, NetworkException {
+        train(network, openMnist("train"), epochs, learningRate, batchSize, seed);
+    }
+
+    public static void train(Network network, Dataset data, int epochs, double learningRate, int batchSize, long seed) throws NetworkException {
+        train(network, data, epochs, learningRate, batchSize, seed, null);
+    }
+
+    /**
+     * Like {@link #train(Network, Dataset, int, double, int, long)}, but hands a checkpoint to
+     * {@code checkpointer} whenever one is due and once more at the end. {@code checkpointer}
+     * may be null.
+     */
+    public static void train(Network network, Dataset data, int epochs, double learningRate, int batchSize, long seed, Checkpointer checkpointer) throws NetworkException {
+        train(network, data, epochs, learningRate, batchSize, seed, checkpointer, null);
+    }
+
+    /**
+     * Like {@link #train(Network, Dataset, int, double, int, long, Checkpointer)}, but also runs
+     * {@code validation} after every epoch and prints the result. {@code validation} may be null.
+     */
+    public static void train(Network network, Dataset data, int epochs, double learningRate, int batchSize, long seed, Checkpointer checkpointer, Validation validation) throws NetworkException {
+        train(network, data, new TrainingCheckpoint(0, 0, 0, seed, epochs, batchSize, learningRate, data.size(), null), checkpointer, validation);
+    }
+
+    /**
+     * Continues the run of the newest checkpoint in {@code directory} on the same data. The
+     * result is bit-for-bit the network the uninterrupted run would have produced.
+     */
+    public static Network resumeTraining(Path directory, Dataset data, Checkpointer checkpointer) throws IOException, NetworkException {
+        return resumeTraining(directory, data, checkpointer, null);
+    }
+
+    public static Network resumeTraining(Path directory, Dataset data, Checkpointer checkpointer, Validation validation) throws IOException, NetworkException {
+        TrainingCheckpoint checkpoint = TrainingCheckpoint.latest(directory);
+        if(checkpoint == null) throw new IOException("No checkpoint found in " + directory);
+        if(checkpoint.getDatasetSize() != data.size()) throw new NetworkException("Checkpoint was taken on " + checkpoint.getDatasetSize() + " samples, but found " + data.size());
+
+        System.out.println("Resuming at " + checkpoint);
+        Network network = checkpoint.loadNetwork();
+        train(network, data, checkpoint, checkpointer, validation);
+        return network;
+    }
+
+    private static void train(Network network, Dataset data, TrainingCheckpoint start, Checkpointer checkpointer, Validation validation) throws NetworkException {
+        int batchSize = start.getBatchSize();
+        double learningRate = start.getLearningRate();
+        if(batchSize < 1) throw new NetworkException("Batch size must be positive, but found " + batchSize);
+
+        Random random = new Random(start.getSeed());
+        int[] order = createOrder(data.size());
+        // Replaying the shuffles of the finished epochs restores both the order and the RNG.
+        for(int epoch = 0; epoch < start.getEpoch(); epoch++) shuffle(order, random);
 
-        for(int epoch = 0; epoch < epochs; epoch++) {
+        double[] input = new double[data.getInputSize()];
+        double[] target = new double[network.getOutputSize()];
+        long steps = start.getSteps();
+        long allocated = NetworkMetrics.ENABLED ? NetworkMetrics.INSTANCE.allocatedBytes() : 0;
+        for(int epoch = start.getEpoch(); epoch < start.getEpochs(); epoch++) {
             System.out.println("Epoch " + epoch);
-            for (int i = 0; i < trainImages.length; i++) {
-                double[] target = new double[10];
-                target[trainLabels[i]] = 1;
+            if(NetworkMetrics.ENABLED) NetworkMetrics.INSTANCE.epochStarted(epoch);
+            shuffle(order, random);
+            for (int i = epoch == start.getEpoch() ? start.getSample() : 0; i < order.length; i++) {
+                int sample = order[i];
+                int label = label(data, sample, target.length);
+                data.copyInput(sample, input);
 
-                network.train(trainImages[i], target, learningRate);
+                target[label] = 1;
+                network.accumulateGradients(input, target);
+                target[label] = 0;
+
+                if ((i + 1) % batchSize == 0 || i + 1 == order.length){
+                    network.applyGradients(learningRate);
+                    steps++;
+                    if(NetworkMetrics.ENABLED){
+                        NetworkMetrics.INSTANCE.recordStep(allocated);
+                        allocated = NetworkMetrics.INSTANCE.allocatedBytes();
+                    }
+
+                    // Checkpoints are only taken between steps, when no gradients are pending.
+                    if(checkpointer != null && checkpointer.isDue(steps)){
+                        boolean epochDone = i + 1 == order.length;
+                        checkpointer.save(network, start.at(epochDone ? epoch + 1 : epoch, epochDone ? 0 : i + 1, steps, null));
+                    }
+                }
 
                 if ((i + 1) % 3000 == 0) System.out.println((i + 1) + " images processed");
             }
+            if(NetworkMetrics.ENABLED) NetworkMetrics.INSTANCE.epochFinished();
+            if(validation != null) System.out.println("Epoch " + epoch + " validation " + validation.run(network));
         }
+
+        if(checkpointer != null) checkpointer.save(network, start.at(start.getEpochs(), 0, steps, null));
     }
 
-    public static void checkNetwork(Network network) throws IOException, NetworkException {
-        double[][] testImages = MnistReader.loadImages("src\\main\\resources\\com\\mnist\\t10k-images.idx3-ubyte");
-        int[] testLabels = MnistReader.loadLabels("src\\main\\resources\\com\\mnist\\t10k-labels.idx1-ubyte");
+    public static void trainMnistParallel(Network network, int epochs, double learningRate, int batchSize, long seed, int threads) throws IOException, NetworkException {
+        MnistDataset data = openMnist("train");
+
+        Random random = new Random(seed);
+        int[] order = createOrder(data.size());
+        try(ParallelTrainer trainer = new ParallelTrainer(network, threads)){
+            for(int epoch = 0; epoch < epochs; epoch++){
+                double seconds = trainer.trainEpoch(data, order, batchSize, learningRate, random);
+                System.out.println("Epoch " + epoch + " took " + seconds + "s on " + threads + " threads");
+            }
+        }
+    }
+
+    public static void measureParallelScaling(Dataset data, int[] layerSizes, int batchSize, double learningRate, long seed, int... threadCounts) throws NetworkException {
+        int[] order = createOrder(data.size());
+
+        double baseline = 0;
+        for(int threads : threadCounts){
+            Network network = new Network(layerSizes);
+            try(ParallelTrainer trainer = new ParallelTrainer(network, threads)){
+                // The first epoch warms up the JIT, the second one is timed.
+                trainer.trainEpoch(data, order, batchSize, learningRate, new Random(seed));
+                double seconds = trainer.trainEpoch(data, order, batchSize, learningRate, new Random(seed));
+
+                if(baseline == 0) baseline = seconds * threadCounts[0];
+                double efficiency = baseline / (seconds * threads);
+                System.out.printf("%2d threads: %.3fs per epoch, %.0f images/s, scaling efficiency %.0f%%%n", threads, seconds, data.size() / seconds, 100 * efficiency);
+            }
+        }
+    }
+
+    /**
+     * Trains a copy of {@code network} with each optimizer and its learning rate on the same
+     * sample orders and prints the epochs and training time each one needs until its accuracy on
+     * {@code testData} reaches {@code targetAccuracy}, giving up after {@code maxEpochs}.
+     * Scoring after each epoch is not counted as training time.
+     */
+    public static void measureTimeToAccuracy(Network network, Dataset data, Dataset testData, int batchSize, long seed, double targetAccuracy, int maxEpochs,
+                                             Optimizer[] optimizers, double[] learningRates) throws NetworkException {
+        if(optimizers.length != learningRates.length) throw new NetworkException("Expected one learning rate per optimizer, but found " + optimizers.length + " optimizers and " + learningRates.length + " rates");
+        if(batchSize < 1) throw new NetworkException("Batch size must be positive, but found " + batchSize);
 
-        int[][] guesses = new int[10][10];
-        int[] frequencyOfNumbers = new int[10];
-        int right = 0;
-        for(int i = 0; i < testImages.length; i++){
-            frequencyOfNumbers[testLabels[i]]++;
+        double[] input = new double[data.getInputSize()];
+        double[] target = new double[network.getOutputSize()];
+        try(Evaluator evaluator = new Evaluator(Runtime.getRuntime().availableProcessors(), 0)){
+            for(int k = 0; k < optimizers.length; k++){
+                Network candidate = network.copy();
+                candidate.setOptimizer(optimizers[k]);
+                Random random = new Random(seed);
+                int[] order = createOrder(data.size());
 
-            double[] output = network.calculate(testImages[i]);
+                double seconds = 0, accuracy = 0;
+                int epoch = 0;
+                while(epoch < maxEpochs && accuracy < targetAccuracy){
+                    long start = System.nanoTime();
+                    shuffle(order, random);
+                    for(int i = 0; i < order.length; i++){
+                        int label = label(data, order[i], target.length);
+                        data.copyInput(order[i], input);
 
-            int maxIdx = 0;
-            for(int j = 0; j < output.length; j++){
-                if(output[j] > output[maxIdx]) maxIdx = j;
+                        target[label] = 1;
+                        candidate.accumulateGradients(input, target);
+                        target[label] = 0;
+
+                        if((i + 1) % batchSize == 0 || i + 1 == order.length) candidate.applyGradients(learningRates[k]);
+                    }
+                    seconds += (System.nanoTime() - start) / 1e9;
+                    epoch++;
+
+                    accuracy = evaluator.evaluate(candidate.toModel(), testData).getAccuracy();
+                }
+
+                String result = accuracy >= targetAccuracy ? "reached" : "missed";
+                System.out.printf("%-32s rate %-6s %s %.2f%% after %d epochs, %.2fs%n", optimizers[k] + " " + optimizers[k].getSchedule(), learningRates[k], result, 100 * accuracy, epoch, seconds);
+            }
+        }
+    }
+
+    /**
+     * Scores {@code testData} with the double, float32 and int8 versions of {@code network} and
+     * prints accuracy, agreement with the double model and latency per image for each.
+     */
+    public static void compareInferenceModes(Network network, Dataset testData) throws NetworkException {
+        NetworkModel model = network.toModel();
+        InferenceModel[] models = {model, model.toFloatModel(), model.toQuantizedModel()};
+        String[] names = {"float64", "float32", "int8"};
+
+        int count = testData.size();
+        int[] reference = new int[count];
+        double[] input = new double[testData.getInputSize()];
+        for(int i = 0; i < count; i++){
+            testData.copyInput(i, input);
+            reference[i] = model.predict(input);
+        }
+
+        for(int m = 0; m < models.length; m++){
+            int right = 0, agree = 0;
+            long nanos = 0;
+            // The first pass warms up the JIT, the second one is timed.
+            for(int pass = 0; pass < 2; pass++){
+                right = 0;
+                agree = 0;
+                nanos = 0;
+                for(int i = 0; i < count; i++){
+                    testData.copyInput(i, input);
+
+                    long start = System.nanoTime();
+                    int guess = models[m].predict(input);
+                    nanos += System.nanoTime() - start;
+
+                    if(guess == testData.getLabel(i)) right++;
+                    if(guess == reference[i]) agree++;
+                }
             }
 
-            guesses[testLabels[i]][maxIdx]++;
+            System.out.printf("%-8s accuracy %.2f%%, agrees with float64 on %.2f%%, %.2f us per image%n", names[m], 100.0 * right / count, 100.0 * agree / count, nanos / 1e3 / count);
+        }
+    }
+
+    /**
+     * Name of the dense-layer kernels selected at startup, "scalar" or "vector (N-bit)".
+     */
+    public static String getKernelName(){
+        return DenseKernels.INSTANCE.name();
+    }
 
-            if(maxIdx == testLabels[i]) right++;
+    // Checked before it is used as an index into the target, so a label the network has no output for is reported as such.
+    private static int label(Dataset data, int index, int outputSize) throws NetworkException {
+        int label = data.getLabel(index);
+        if(label < 0 || label >= outputSize) throw new NetworkException("Label " + label + " of sample " + index + " is not one of the " + outputSize + " outputs");
+
+        return label;
+    }
+
+    public static MnistDataset openMnist(String set) throws IOException {
+        Path directory = Path.of("src", "main", "resources", "com", "mnist");
+        return MnistDataset.open(directory.resolve(set + "-images.idx3-ubyte").toString(),
+                                 directory.resolve(set + "-labels.idx1-ubyte").toString());
+    }
+
+    public static int[] createOrder(int length){
+        int[] order = new int[length];
+        for(int i = 0; i < length; i++){
+            order[i] = i;
+        }
+
+        return order;
+    }
+
+    public static void shuffle(int[] arr, Random random){
+        for(int i = arr.length - 1; i > 0; i--){
+            int j = random.nextInt(i + 1);
+            int tmp = arr[i];
+            arr[i] = arr[j];
+            arr[j] = tmp;
+        }
+    }
+
+    public static void checkNetwork(Network network) throws IOException, NetworkException {
+        checkNetwork(network, openMnist("t10k"));
+    }
 
-            if((i + 1) % 1000 == 0) System.out.println((i + 1) + " images tested");
+    /**
+     * Scores {@code testData} on every core and prints accuracy, throughput and the statistics
+     * of each digit. Use an {@link Evaluator} directly to get the numbers instead.
+     */
+    public static void checkNetwork(Network network, Dataset testData) throws NetworkException {
+        Evaluation result;
+        try(Evaluator evaluator = new Evaluator(Runtime.getRuntime().availableProcessors(), 0)){
+            result = evaluator.evaluate(network.toModel(), testData);
         }
+        int count = result.getCount();
+        double seconds = result.getSeconds();
+        int[][] guesses = result.getConfusionMatrix();
 
-        System.out.println("Percentage of right " + (double) 100 * right / testImages.length + "%");
+        System.out.println(count + " images tested in " + seconds + "s (" + (long) (count / seconds) + " images/s)");
+        System.out.println("Percentage of right " + (double) 100 * result.getCorrect() / count + "%");
 
-        for(int expected = 0; expected < 10; expected++){
+        for(int expected = 0; expected < guesses.length; expected++){
             System.out.println("----------------------------------------");
             System.out.println("Number " + expected + " statistic");
 
             int wrongCount = 0;
-            for(int networkGuess = 0; networkGuess < 10; networkGuess++){
+            for(int networkGuess = 0; networkGuess < guesses.length; networkGuess++){
                 if(expected != networkGuess) wrongCount += guesses[expected][networkGuess];
 
                 System.out.println(guesses[expected][networkGuess] + " times network guessed " + networkGuess);
             }
 
-            System.out.println("Wrongly guessed " + wrongCount + " of " + frequencyOfNumbers[expected] + " times(" + (double) 100 * wrongCount / frequencyOfNumbers[expected] + "%)");
+            System.out.println("Wrongly guessed " + wrongCount + " of " + result.getLabelCount(expected) + " times(" + (double) 100 * wrongCount / result.getLabelCount(expected) + "%)");
         }
 
         System.out.println("----------------------------------------");
@@ -0,0 +1,41 @@
+package com.network;
+
+import java.util.Arrays;
+
+/**
+ * Per-thread scratch buffers for {@link NetworkModel#calculate(double[], NetworkWorkspace)} and
+ * {@link NetworkModel#calculateBatch(double[], double[], int, NetworkWorkspace)}. The batch tile
+ * is only allocated on the first batched call. A workspace must not be used by two threads at
+ * the same time.
+ */
+public final class NetworkWorkspace {
+    private final int[] NETWORK_LAYER_SIZES;
+    final double[][] outputs;
+    private double[][] tile;
+
+    NetworkWorkspace(int[] NETWORK_LAYER_SIZES) {
+        this.NETWORK_LAYER_SIZES = NETWORK_LAYER_SIZES.clone();
+        this.outputs = new double[NETWORK_LAYER_SIZES.length][];
+        for(int layer = 0; layer < NETWORK_LAYER_SIZES.length; layer++){
+            outputs[layer] = new double[NETWORK_LAYER_SIZES[layer]];
+        }
+    }
+
+    /**
+     * Buffers for {@code tileSize} samples per layer, in row-major order.
+     */
+    double[][] tile(int tileSize) {
+        if(tile == null){
+            tile = new double[NETWORK_LAYER_SIZES.length][];
+            for(int layer = 0; layer < NETWORK_LAYER_SIZES.length; layer++){
+                tile[layer] = new double[tileSize * NETWORK_LAYER_SIZES[layer]];
+            }
+        }
+
+        return tile;
+    }
+
+    boolean fits(int[] layerSizes) {
+        return Arrays.equals(NETWORK_LAYER_SIZES, layerSizes);
+    }
+}
@@ -0,0 +1,361 @@
+package com.network;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Turns the summed gradients of a mini-batch into a parameter update. Optimizers that need state
+ * keep it in flat arrays laid out like the weights and biases they update, allocated once when
+ * the optimizer is attached to a network. Each parameter array is updated in a single pass that
+ * reads the gradient, updates the state, writes the parameter and clears the gradient, so a
+ * step allocates nothing.
+ * <p>
+ * Optimizers are written as specs that {@link #parse} reads back: {@code sgd},
+ * {@code momentum[:beta]}, {@code nesterov[:beta]} and {@code adam[:beta1:beta2:epsilon]}.
+ * The state is saved next to a model file as {@code <model>.opt}; see {@link #stateFile}.
+ */
+public abstract class Optimizer {
+    public static final String FILE_SUFFIX = ".opt";
+    private static final int MAGIC = 0x504F474E;
+    private static final int VERSION = 1;
+
+    private final int slots;
+    private LearningRateSchedule schedule = LearningRateSchedule.constant();
+    // [parameter array][slot], parameter arrays ordered weights 1, biases 1, weights 2, ...
+    private double[][][] state;
+    private long steps;
+
+    private Optimizer(int slots) {
+        this.slots = slots;
+    }
+
+    /**
+     * Plain gradient descent, bit for bit the update {@link Network} always made.
+     */
+    public static Optimizer sgd() {
+        return new Sgd();
+    }
+
+    /**
+     * Heavy-ball momentum: {@code v = beta * v + g}, {@code p -= rate * v}.
+     */
+    public static Optimizer momentum(double beta) {
+        return new Momentum(beta, false);
+    }
+
+    /**
+     * Nesterov momentum: {@code v = beta * v + g}, {@code p -= rate * (g + beta * v)}.
+     */
+    public static Optimizer nesterov(double beta) {
+        return new Momentum(beta, true);
+    }
+
+    public static Optimizer adam() {
+        return adam(0.9, 0.999, 1e-8);
+    }
+
+    public static Optimizer adam(double beta1, double beta2, double epsilon) {
+        return new Adam(beta1, beta2, epsilon);
+    }
+
+    /**
+     * Reads a spec as written by {@link #toString}.
+     */
+    public static Optimizer parse(String spec) {
+        String[] parts = spec.split(":");
+        try{
+            switch(parts[0]){
+                case "sgd":
+                    if(parts.length == 1) return sgd();
+                    break;
+                case "momentum":
+                    if(parts.length <= 2) return momentum(parts.length > 1 ? Double.parseDouble(parts[1]) : 0.9);
+                    break;
+                case "nesterov":
+                    if(parts.length <= 2) return nesterov(parts.length > 1 ? Double.parseDouble(parts[1]) : 0.9);
+                    break;
+                case "adam":
+                    if(parts.length == 1) return adam();
+                    if(parts.length == 4) return adam(Double.parseDouble(parts[1]), Double.parseDouble(parts[2]), Double.parseDouble(parts[3]));
+                    break;
+            }
+        }catch(NumberFormatException e){
+            throw new IllegalArgumentException("Bad optimizer " + spec, e);
+        }
+
+        throw new IllegalArgumentException("Unknown optimizer " + spec + ". Expected sgd, momentum[:beta], nesterov[:beta] or adam[:beta1:beta2:epsilon]");
+    }
+
+    public static String stateFile(String modelPath) {
+        return modelPath + FILE_SUFFIX;
+    }
+
+    public LearningRateSchedule getSchedule() {
+        return schedule;
+    }
+
+    public Optimizer setSchedule(LearningRateSchedule schedule) {
+        this.schedule = schedule;
+        return this;
+    }
+
+    /**
+     * Number of steps taken, which is also the position in the learning rate schedule.
+     */
+    public long getSteps() {
+        return steps;
+    }
+
+    /**
+     * Allocates the state for {@code weights} and {@code biases}, or checks that state that was
+     * loaded or used before has their shape.
+     */
+    void attach(double[][] weights, double[][] biases) {
+        int arrays = 2 * (weights.length - 1);
+        if(state == null){
+            state = new double[arrays][slots][];
+            for(int layer = 1; layer < weights.length; layer++){
+                for(int slot = 0; slot < slots; slot++){
+                    state[2 * (layer - 1)][slot] = new double[weights[layer].length];
+                    state[2 * (layer - 1) + 1][slot] = new double[biases[layer].length];
+                }
+            }
+            return;
+        }
+
+        boolean matches = state.length == arrays;
+        for(int layer = 1; matches && layer < weights.length; layer++){
+            for(int slot = 0; slot < slots; slot++){
+                matches &= state[2 * (layer - 1)][slot].length == weights[layer].length && state[2 * (layer - 1) + 1][slot].length == biases[layer].length;
+            }
+        }
+        if(!matches) throw new IllegalArgumentException("Optimizer state does not match the network's layer sizes");
+    }
+
+    /**
+     * Applies one update from gradients summed over {@code samples} samples and clears them.
+     */
+    void step(double[][] weights, double[][] weightGradients, double[][] biases, double[][] biasGradients, int samples, double learningRate) {
+        double rate = schedule.rate(learningRate, steps);
+        steps++;
+
+        for(int layer = 1; layer < weights.length; layer++){
+            update(weights[layer], weightGradients[layer], state[2 * (layer - 1)], samples, rate);
+            update(biases[layer], biasGradients[layer], state[2 * (layer - 1) + 1], samples, rate);
+        }
+    }
+
+    /**
+     * The fused update of one parameter array. {@code slots} holds this optimizer's state arrays
+     * for it; {@link #steps} already counts the current step.
+     */
+    abstract void update(double[] parameters, double[] gradients, double[][] slots, int samples, double rate);
+
+    /**
+     * True if a single-sample step may skip the gradient buffer, which only plain SGD allows.
+     */
+    boolean isPlainSgd() {
+        return false;
+    }
+
+    /**
+     * A copy that later steps of this optimizer do not touch.
+     */
+    Optimizer copy() {
+        Optimizer copy = parse(toString()).setSchedule(schedule);
+        copy.steps = steps;
+        if(state != null){
+            copy.state = new double[state.length][slots][];
+            for(int array = 0; array < state.length; array++){
+                for(int slot = 0; slot < slots; slot++){
+                    copy.state[array][slot] = state[array][slot].clone();
+                }
+            }
+        }
+
+        return copy;
+    }
+
+    /**
+     * Writes the spec, schedule, step count and state to {@code path}, replacing it atomically.
+     */
+    public void save(String path) throws IOException {
+        Path target = Path.of(path);
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        CRC32 crc = new CRC32();
+        try(DataOutputStream out = new DataOutputStream(new CheckedOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)), crc))){
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(toString());
+            out.writeUTF(schedule.toString());
+            out.writeLong(steps);
+            out.writeInt(state == null ? 0 : state.length);
+            out.writeInt(slots);
+            for(int array = 0; state != null && array < state.length; array++){
+                for(double[] values : state[array]){
+                    out.writeInt(values.length);
+                    for(double value : values) out.writeDouble(value);
+                }
+            }
+            out.writeInt((int) crc.getValue());
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    public static Optimizer load(String path) throws IOException {
+        CRC32 crc = new CRC32();
+        try(DataInputStream in = new DataInputStream(new CheckedInputStream(new BufferedInputStream(Files.newInputStream(Path.of(path))), crc))){
+            if(in.readInt() != MAGIC) throw new IOException("Bad header. Expected optimizer state file");
+            int version = in.readInt();
+            if(version != VERSION) throw new IOException("Unsupported optimizer state version " + version);
+
+            Optimizer optimizer;
+            try{
+                optimizer = parse(in.readUTF()).setSchedule(LearningRateSchedule.parse(in.readUTF(), 0));
+            }catch(IllegalArgumentException e){
+                throw new IOException("Bad optimizer in " + path + ": " + e.getMessage(), e);
+            }
+            optimizer.steps = in.readLong();
+
+            int arrays = in.readInt();
+            int slots = in.readInt();
+            if(arrays < 0 || arrays % 2 != 0 || slots != optimizer.slots) throw new IOException("Bad header. Unexpected state layout in " + path);
+            if(arrays > 0){
+                optimizer.state = new double[arrays][slots][];
+                for(int array = 0; array < arrays; array++){
+                    for(int slot = 0; slot < slots; slot++){
+                        int length = in.readInt();
+                        if(length < 1) throw new IOException("Bad state array length " + length + " in " + path);
+
+                        double[] values = new double[length];
+                        for(int i = 0; i < length; i++) values[i] = in.readDouble();
+                        optimizer.state[array][slot] = values;
+                    }
+                }
+            }
+
+            int expected = (int) crc.getValue();
+            if(in.readInt() != expected) throw new IOException("Bad payload. Checksum mismatch in " + path);
+
+            return optimizer;
+        }
+    }
+
+    private static final class Sgd extends Optimizer {
+        private Sgd() {
+            super(0);
+        }
+
+        @Override
+        void update(double[] parameters, double[] gradients, double[][] slots, int samples, double rate) {
+            DenseKernels.INSTANCE.axpy(-(rate / samples), gradients, 0, parameters, 0, parameters.length);
+            Arrays.fill(gradients, 0d);
+        }
+
+        @Override
+        boolean isPlainSgd() {
+            return getSchedule().isConstant();
+        }
+
+        @Override
+        public String toString() {
+            return "sgd";
+        }
+    }
+
+    private static final class Momentum extends Optimizer {
+        private final double beta;
+        private final boolean nesterov;
+
+        private Momentum(double beta, boolean nesterov) {
+            super(1);
+            if(beta < 0 || beta >= 1) throw new IllegalArgumentException("Momentum must be in [0, 1), but found " + beta);
+
+            this.beta = beta;
+            this.nesterov = nesterov;
+        }
+
+        @Override
+        void update(double[] parameters, double[] gradients, double[][] slots, int samples, double rate) {
+            double[] velocity = slots[0];
+            double scale = 1d / samples;
+            if(nesterov){
+                for(int i = 0; i < parameters.length; i++){
+                    double gradient = gradients[i] * scale;
+                    double v = beta * velocity[i] + gradient;
+                    velocity[i] = v;
+                    parameters[i] -= rate * (gradient + beta * v);
+                    gradients[i] = 0;
+                }
+            }else{
+                for(int i = 0; i < parameters.length; i++){
+                    double v = beta * velocity[i] + gradients[i] * scale;
+                    velocity[i] = v;
+                    parameters[i] -= rate * v;
+                    gradients[i] = 0;
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return (nesterov ? "nesterov:" : "momentum:") + beta;
+        }
+    }
+
+    private static final class Adam extends Optimizer {
+        private final double beta1;
+        private final double beta2;
+        private final double epsilon;
+
+        private Adam(double beta1, double beta2, double epsilon) {
+            super(2);
+            if(beta1 < 0 || beta1 >= 1 || beta2 < 0 || beta2 >= 1) throw new IllegalArgumentException("Adam betas must be in [0, 1), but found " + beta1 + " and " + beta2);
+            if(!(epsilon > 0)) throw new IllegalArgumentException("Adam epsilon must be positive, but found " + epsilon);
+
+            this.beta1 = beta1;
+            this.beta2 = beta2;
+            this.epsilon = epsilon;
+        }
+
+        @Override
+        void update(double[] parameters, double[] gradients, double[][] slots, int samples, double rate) {
+            double[] first = slots[0];
+            double[] second = slots[1];
+            double scale = 1d / samples;
+
+            // The bias corrections are folded into the step size and epsilon, so the loop does
+            // not divide by them per parameter.
+            long t = getSteps();
+            double correction1 = 1 - Math.pow(beta1, t);
+            double correction2 = Math.sqrt(1 - Math.pow(beta2, t));
+            double stepSize = rate * correction2 / correction1;
+            double correctedEpsilon = epsilon * correction2;
+
+            for(int i = 0; i < parameters.length; i++){
+                double gradient = gradients[i] * scale;
+                double m = beta1 * first[i] + (1 - beta1) * gradient;
+                double v = beta2 * second[i] + (1 - beta2) * gradient * gradient;
+                first[i] = m;
+                second[i] = v;
+                parameters[i] -= stepSize * m / (Math.sqrt(v) + correctedEpsilon);
+                gradients[i] = 0;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "adam:" + beta1 + ":" + beta2 + ":" + epsilon;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.network;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Data-parallel mini-batch trainer. Every batch is cut into one contiguous slice per worker,
+ * each worker sums its gradients into its own shard, the shards are merged pairwise in a
+ * fixed tree order and the network is updated once. For a given seed and thread count the
+ * trained weights are therefore always the same.
+ */
+public class ParallelTrainer implements AutoCloseable {
+    private final Network network;
+    private final int threads;
+    private final ForkJoinPool pool;
+    private final GradientBuffer[] shards;
+    private final double[][] inputs;
+    private final double[][] targets;
+
+    public ParallelTrainer(Network network, int threads) {
+        if(threads < 1) throw new IllegalArgumentException("Thread count must be positive, but found " + threads);
+
+        int[] layerSizes = network.getLayerSizes();
+        this.network = network;
+        this.threads = threads;
+        this.pool = new ForkJoinPool(threads);
+        this.shards = new GradientBuffer[threads];
+        this.inputs = new double[threads][layerSizes[0]];
+        this.targets = new double[threads][layerSizes[layerSizes.length - 1]];
+        for(int i = 0; i < threads; i++){
+            shards[i] = network.newGradientBuffer();
+        }
+    }
+
+    /**
+     * Runs one epoch over {@code data} in a freshly shuffled order and returns its wall time
+     * in seconds.
+     */
+    public double trainEpoch(Dataset data, int[] order, int batchSize, double learningRate, Random random) throws NetworkException {
+        if(batchSize < 1) throw new NetworkException("Batch size must be positive, but found " + batchSize);
+
+        long start = System.nanoTime();
+        if(NetworkMetrics.ENABLED) NetworkMetrics.INSTANCE.epochStarted(NetworkMetrics.INSTANCE.getEpoch() + 1);
+        NetworkTools.shuffle(order, random);
+        for(int from = 0; from < order.length; from += batchSize){
+            trainBatch(data, order, from, Math.min(from + batchSize, order.length), learningRate);
+        }
+        if(NetworkMetrics.ENABLED) NetworkMetrics.INSTANCE.epochFinished();
+
+        return (System.nanoTime() - start) / 1e9;
+    }
+
+    public void trainBatch(Dataset data, int[] order, int from, int to, double learningRate) throws NetworkException {
+        int batchSize = to - from;
+        // Only the calling thread's allocations are counted; the workers' show up in the GC log.
+        long allocated = NetworkMetrics.ENABLED ? NetworkMetrics.INSTANCE.allocatedBytes() : 0;
+
+        List<Callable<Void>> tasks = new ArrayList<>(threads);
+        for(int worker = 0; worker < threads; worker++){
+            int sliceFrom = from + (int) ((long) batchSize * worker / threads);
+            int sliceTo = from + (int) ((long) batchSize * (worker + 1) / threads);
+            GradientBuffer shard = shards[worker];
+            double[] input = inputs[worker];
+            double[] target = targets[worker];
+
+            tasks.add(() -> {
+                for(int i = sliceFrom; i < sliceTo; i++){
+                    int sample = order[i];
+                    int label = data.getLabel(sample);
+                    data.copyInput(sample, input);
+
+                    target[label] = 1;
+                    network.accumulateGradients(input, target, shard);
+                    target[label] = 0;
+                }
+
+                return null;
+            });
+        }
+        runAll(tasks);
+
+        for(int stride = 1; stride < threads; stride *= 2){
+            tasks.clear();
+            for(int i = 0; i + stride < threads; i += 2 * stride){
+                GradientBuffer left = shards[i];
+                GradientBuffer right = shards[i + stride];
+
+                tasks.add(() -> {
+                    left.add(right);
+                    right.clear();
+                    return null;
+                });
+            }
+            runAll(tasks);
+        }
+
+        network.applyGradients(shards[0], learningRate);
+        if(NetworkMetrics.ENABLED) NetworkMetrics.INSTANCE.recordStep(allocated);
+    }
+
+    private void runAll(List<Callable<Void>> tasks) throws NetworkException {
+        try{
+            for(Future<Void> future : pool.invokeAll(tasks)){
+                future.get();
+            }
+        }catch(ExecutionException e){
+            if(e.getCause() instanceof NetworkException) throw (NetworkException) e.getCause();
+            throw new NetworkException("Training worker failed", e.getCause());
+        }catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new NetworkException("Training interrupted", e);
+        }
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+}
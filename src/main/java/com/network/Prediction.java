@@ -0,0 +1,28 @@
+package com.network;
+
+/**
+ * Result of scoring one input, together with the model version that produced it.
+ */
+public final class Prediction {
+    private final int digit;
+    private final double[] outputs;
+    private final ModelVersion version;
+
+    Prediction(double[] outputs, ModelVersion version) {
+        this.digit = InferenceModel.argMax(outputs);
+        this.outputs = outputs;
+        this.version = version;
+    }
+
+    public int getDigit() {
+        return digit;
+    }
+
+    public double[] getOutputs() {
+        return outputs.clone();
+    }
+
+    public ModelVersion getVersion() {
+        return version;
+    }
+}
@@ -0,0 +1,152 @@
+package com.network;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded LRU cache of model outputs, keyed by a fingerprint of the input. Every input value is
+ * quantized to one of {@code levels} steps of {@code [0, inputRange]}, so inputs that differ
+ * only by less than a step share an entry. An entry only answers lookups for the model that
+ * produced it, and {@link #invalidate()} drops everything, e.g. when a new model is activated.
+ */
+public class PredictionCache {
+    private final int capacity;
+    private final double scale;
+    private final LinkedHashMap<Key, Entry> entries;
+    private final ThreadLocal<Key> probes = ThreadLocal.withInitial(() -> new Key(new byte[0], 0));
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param inputRange the largest input value, 1 for training data or 255 for raw pixels
+     * @param levels number of quantization steps per value, at most 256
+     */
+    public PredictionCache(int capacity, double inputRange, int levels) {
+        if(capacity < 1) throw new IllegalArgumentException("Capacity must be positive, but found " + capacity);
+        if(levels < 2 || levels > 256) throw new IllegalArgumentException("Levels must be between 2 and 256, but found " + levels);
+        if(!(inputRange > 0)) throw new IllegalArgumentException("Input range must be positive, but found " + inputRange);
+
+        this.capacity = capacity;
+        this.scale = (levels - 1) / inputRange;
+        this.entries = new LinkedHashMap<>(capacity * 4 / 3 + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                if(size() <= PredictionCache.this.capacity) return false;
+
+                evictions.increment();
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Returns a copy of the output {@code model} produced for an input with the same
+     * fingerprint, or null.
+     */
+    public double[] get(double[] input, InferenceModel model) {
+        Key key = fingerprint(input);
+        Entry entry;
+        synchronized(this){
+            entry = entries.get(key);
+        }
+
+        if(entry == null || entry.model != model){
+            misses.increment();
+            return null;
+        }
+
+        hits.increment();
+        return entry.output.clone();
+    }
+
+    public void put(double[] input, InferenceModel model, double[] output) {
+        Key key = fingerprint(input).copy();
+        Entry entry = new Entry(model, output.clone());
+        synchronized(this){
+            entries.put(key, entry);
+        }
+    }
+
+    public synchronized void invalidate() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public double getHitRate() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    // Fills the calling thread's probe key, so a lookup allocates nothing; put copies it before inserting.
+    private Key fingerprint(double[] input) {
+        Key probe = probes.get();
+        if(probe.levels.length != input.length) probe.levels = new byte[input.length];
+
+        byte[] levels = probe.levels;
+        int hash = 1;
+        for(int i = 0; i < input.length; i++){
+            // Adding 0.5 before the cast rounds like Math.round for the non-negative values
+            // that survive the clamp, at a fraction of its cost.
+            int level = Math.max(0, Math.min(255, (int) (input[i] * scale + 0.5)));
+            levels[i] = (byte) level;
+            hash = 31 * hash + level;
+        }
+
+        probe.hash = hash ^ (hash >>> 16);
+        return probe;
+    }
+
+    // Only a thread's probe is ever refilled; keys in the map are copies and never change.
+    private static final class Key {
+        private byte[] levels;
+        private int hash;
+
+        private Key(byte[] levels, int hash) {
+            this.levels = levels;
+            this.hash = hash;
+        }
+
+        private Key copy() {
+            return new Key(levels.clone(), hash);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Key key && hash == key.hash && Arrays.equals(levels, key.levels);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class Entry {
+        private final InferenceModel model;
+        private final double[] output;
+
+        private Entry(InferenceModel model, double[] output) {
+            this.model = model;
+            this.output = output;
+        }
+    }
+}
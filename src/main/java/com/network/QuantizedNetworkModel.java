@@ -0,0 +1,163 @@
+package com.network;
+
+import java.util.Arrays;
+
+/**
+ * Post-training int8 quantization of a {@link NetworkModel}. Each layer's weights are mapped
+ * to signed bytes with one symmetric scale per layer (largest magnitude maps to 127). The
+ * activations feeding a layer are normalized pixels or outputs of a [0, 1]-valued activation
+ * (see {@link Activation#isUnitRange()}), so they are quantized to 0..255 with the fixed
+ * scale 1/255. Sums are accumulated in int and converted back to real values once per neuron
+ * with the combined scale; biases stay in float.
+ */
+public final class QuantizedNetworkModel implements InferenceModel {
+    private static final int ACTIVATION_LEVELS = 255;
+    private final int[] NETWORK_LAYER_SIZES;
+    private final int NETWORK_SIZE;
+    private final int INPUT_SIZE;
+    private final int OUTPUT_SIZE;
+    private final byte[][] weights;
+    private final float[] weightScales;
+    private final float[][] biases;
+    private final Activation[] activations;
+    private final ThreadLocal<Workspace> workspaces = ThreadLocal.withInitial(Workspace::new);
+
+    QuantizedNetworkModel(int[] NETWORK_LAYER_SIZES, double[][] weights, double[][] biases, Activation[] activations) throws NetworkException {
+        for(int layer = 1; layer < NETWORK_LAYER_SIZES.length - 1; layer++){
+            if(!activations[layer].isUnitRange()) throw new NetworkException("Cannot quantize layer " + layer + ": " + activations[layer].getName() + " outputs are not limited to [0, 1]");
+        }
+
+        this.NETWORK_LAYER_SIZES = NETWORK_LAYER_SIZES.clone();
+        this.NETWORK_SIZE = NETWORK_LAYER_SIZES.length;
+        this.INPUT_SIZE = NETWORK_LAYER_SIZES[0];
+        this.OUTPUT_SIZE = NETWORK_LAYER_SIZES[NETWORK_SIZE - 1];
+
+        this.weights = new byte[NETWORK_SIZE][];
+        this.weightScales = new float[NETWORK_SIZE];
+        this.biases = new float[NETWORK_SIZE][];
+        for(int layer = 1; layer < NETWORK_SIZE; layer++){
+            double maxAbs = 0;
+            for(double weight : weights[layer]) maxAbs = Math.max(maxAbs, Math.abs(weight));
+            double scale = maxAbs == 0 ? 1 : maxAbs / 127;
+
+            this.weightScales[layer] = (float) scale;
+            this.weights[layer] = new byte[weights[layer].length];
+            for(int i = 0; i < weights[layer].length; i++){
+                this.weights[layer][i] = (byte) Math.round(weights[layer][i] / scale);
+            }
+
+            this.biases[layer] = new float[biases[layer].length];
+            for(int i = 0; i < biases[layer].length; i++){
+                this.biases[layer][i] = (float) biases[layer][i];
+            }
+        }
+        this.activations = activations.clone();
+    }
+
+    @Override
+    public void calculate(double[] input, double[] output) throws NetworkException {
+        if(output.length != OUTPUT_SIZE) throw new NetworkException("Expected output size " + OUTPUT_SIZE + ", but found " + output.length);
+
+        float[] result = calculate(input);
+        for(int i = 0; i < OUTPUT_SIZE; i++){
+            output[i] = result[i];
+        }
+    }
+
+    @Override
+    public int predict(double[] input) throws NetworkException {
+        float[] output = calculate(input);
+
+        int guess = 0;
+        for(int i = 1; i < OUTPUT_SIZE; i++){
+            if(output[i] > output[guess]) guess = i;
+        }
+
+        return guess;
+    }
+
+    public float getWeightScale(int layer) {
+        return weightScales[layer];
+    }
+
+    private float[] calculate(double[] input) throws NetworkException {
+        if(input.length != INPUT_SIZE) throw new NetworkException("Expected input size " + INPUT_SIZE + ", but found " + input.length);
+
+        Workspace workspace = workspaces.get();
+        int[] activations = workspace.activations;
+        for(int i = 0; i < INPUT_SIZE; i++){
+            activations[i] = quantize(input[i]);
+        }
+
+        int activationCount = INPUT_SIZE;
+        long start = NetworkMetrics.ENABLED ? System.nanoTime() : 0;
+        for(int layer = 1; layer < NETWORK_SIZE; layer++){
+            int neurons = NETWORK_LAYER_SIZES[layer];
+            byte[] layerWeights = weights[layer];
+            int[] sums = workspace.sums;
+
+            Arrays.fill(sums, 0, neurons, 0);
+            for(int prevNeuron = 0; prevNeuron < activationCount; prevNeuron++){
+                int activation = activations[prevNeuron];
+                if(activation == 0) continue;
+
+                int offset = prevNeuron * neurons;
+                for(int neuron = 0; neuron < neurons; neuron++){
+                    sums[neuron] += activation * layerWeights[offset + neuron];
+                }
+            }
+
+            float scale = weightScales[layer] / ACTIVATION_LEVELS;
+            float[] layerBiases = biases[layer];
+            float[] outputs = workspace.outputs;
+            for(int neuron = 0; neuron < neurons; neuron++){
+                outputs[neuron] = layerBiases[neuron] + scale * sums[neuron];
+            }
+            this.activations[layer].apply(outputs, 0, neurons);
+
+            if(layer < NETWORK_SIZE - 1){
+                for(int neuron = 0; neuron < neurons; neuron++){
+                    activations[neuron] = quantize(outputs[neuron]);
+                }
+                activationCount = neurons;
+            }
+
+            if(NetworkMetrics.ENABLED){
+                long now = System.nanoTime();
+                NetworkMetrics.INSTANCE.recordForward(layer, now - start);
+                start = now;
+            }
+        }
+
+        return workspace.outputs;
+    }
+
+    private static int quantize(double activation) {
+        return (int) Math.round(Math.min(1, Math.max(0, activation)) * ACTIVATION_LEVELS);
+    }
+
+    @Override
+    public int getInputSize() {
+        return INPUT_SIZE;
+    }
+
+    @Override
+    public int getOutputSize() {
+        return OUTPUT_SIZE;
+    }
+
+    private final class Workspace {
+        private final int[] activations;
+        private final int[] sums;
+        private final float[] outputs;
+
+        private Workspace() {
+            int maxLayerSize = 0;
+            for(int size : NETWORK_LAYER_SIZES) maxLayerSize = Math.max(maxLayerSize, size);
+
+            activations = new int[maxLayerSize];
+            sums = new int[maxLayerSize];
+            outputs = new float[maxLayerSize];
+        }
+    }
+}
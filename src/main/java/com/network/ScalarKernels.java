@@ -0,0 +1,22 @@
+package com.network;
+
+final class ScalarKernels extends DenseKernels {
+    @Override
+    void axpy(double a, double[] x, int xOffset, double[] y, int yOffset, int length) {
+        for(int i = 0; i < length; i++){
+            y[yOffset + i] += a * x[xOffset + i];
+        }
+    }
+
+    @Override
+    void axpy(float a, float[] x, int xOffset, float[] y, int yOffset, int length) {
+        for(int i = 0; i < length; i++){
+            y[yOffset + i] += a * x[xOffset + i];
+        }
+    }
+
+    @Override
+    String name() {
+        return "scalar";
+    }
+}
@@ -0,0 +1,86 @@
+package com.network;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The IDX shards written by {@link DatasetIngester}, in shard order, as one {@link Dataset}.
+ */
+public class ShardedDataset implements Dataset {
+    private final MnistDataset[] shards;
+    private final int[] offsets;
+    private final int size;
+
+    public ShardedDataset(List<MnistDataset> shards) {
+        if(shards.isEmpty()) throw new IllegalArgumentException("Expected at least one shard");
+
+        this.shards = shards.toArray(new MnistDataset[0]);
+        this.offsets = new int[this.shards.length];
+        int total = 0;
+        for(int i = 0; i < this.shards.length; i++){
+            if(this.shards[i].getInputSize() != this.shards[0].getInputSize()) throw new IllegalArgumentException("Shard " + i + " has " + this.shards[i].getInputSize() + " values per sample, but shard 0 has " + this.shards[0].getInputSize());
+
+            offsets[i] = total;
+            total += this.shards[i].size();
+        }
+        this.size = total;
+    }
+
+    /**
+     * Opens every complete shard in {@code directory}, stopping at the first missing one.
+     */
+    public static ShardedDataset open(Path directory) throws IOException {
+        List<MnistDataset> shards = new ArrayList<>();
+        for(int shard = 0; ; shard++){
+            Path images = directory.resolve(DatasetIngester.shardName(shard) + DatasetIngester.IMAGES_SUFFIX);
+            Path labels = directory.resolve(DatasetIngester.shardName(shard) + DatasetIngester.LABELS_SUFFIX);
+            if(!Files.exists(images) || !Files.exists(labels)) break;
+
+            shards.add(MnistDataset.open(images.toString(), labels.toString()));
+        }
+        if(shards.isEmpty()) throw new IOException("No shards found in " + directory);
+
+        return new ShardedDataset(shards);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int getInputSize() {
+        return shards[0].getInputSize();
+    }
+
+    @Override
+    public void copyInput(int index, double[] dest) {
+        int shard = shard(index);
+        shards[shard].copyInput(index - offsets[shard], dest);
+    }
+
+    @Override
+    public int getLabel(int index) {
+        int shard = shard(index);
+        return shards[shard].getLabel(index - offsets[shard]);
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    private int shard(int index) {
+        if(index < 0 || index >= size) throw new IndexOutOfBoundsException("Sample " + index + " out of " + size);
+
+        // Empty shards share their offset with the next one, so the last matching shard is used.
+        int found = Arrays.binarySearch(offsets, index);
+        if(found < 0) return -found - 2;
+
+        while(found + 1 < offsets.length && offsets[found + 1] == index) found++;
+        return found;
+    }
+}
@@ -0,0 +1,108 @@
+package com.network;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Trains a network on MNIST-style IDX files with periodic checkpoints, or resumes the run of
+ * the newest checkpoint after a crash.
+ * Usage: {@code Trainer --output path [--images path --labels path | --shards directory] [--layers 784-100-100-10 | --init model]
+ * [--epochs 1] [--rate 0.3] [--batch 1] [--optimizer sgd] [--schedule constant] [--seed n] [--checkpoints dir] [--every 1000] [--resume]
+ * [--test-images path --test-labels path [--validate 1000]]}
+ * <p>
+ * With {@code --resume} the layer sizes and training settings come from the checkpoint, so only
+ * the data, {@code --checkpoints} and {@code --output} are needed. {@code --init} starts from the
+ * weights of an existing model file instead of a random initialization. {@code --shards} trains
+ * on the IDX shards written by {@link DatasetIngester}. {@code --optimizer} and {@code --schedule}
+ * take the specs of {@link Optimizer#parse} and {@link LearningRateSchedule#parse}; a bare
+ * {@code cosine} schedule runs over the whole training run. The optimizer state is written next
+ * to {@code --output} so a later {@code --init} continues with it.
+ * <p>
+ * With test files, every epoch ends with a check on {@code --validate} fixed random test samples
+ * (all of them if 0), and the finished network is scored on the whole test set, printing the
+ * precision and recall of each digit and the most confident errors.
+ */
+public class Trainer {
+    public static void main(String[] args) throws IOException, NetworkException, InterruptedException {
+        String imagesPath = Path.of("src", "main", "resources", "com", "mnist", "train-images.idx3-ubyte").toString();
+        String labelsPath = Path.of("src", "main", "resources", "com", "mnist", "train-labels.idx1-ubyte").toString();
+        String shards = null, output = null, layers = "784-100-100-10", init = null, optimizer = null, schedule = null, testImages = null, testLabels = null;
+        Path checkpoints = Path.of("checkpoints");
+        int epochs = 1, batchSize = 1, every = 1000, validate = 1000;
+        double learningRate = 0.3;
+        long seed = System.nanoTime();
+        boolean resume = false;
+
+        for(int i = 0; i < args.length; i++){
+            switch(args[i]){
+                case "--output" -> output = args[++i];
+                case "--images" -> imagesPath = args[++i];
+                case "--labels" -> labelsPath = args[++i];
+                case "--shards" -> shards = args[++i];
+                case "--layers" -> layers = args[++i];
+                case "--init" -> init = args[++i];
+                case "--epochs" -> epochs = Integer.parseInt(args[++i]);
+                case "--rate" -> learningRate = Double.parseDouble(args[++i]);
+                case "--batch" -> batchSize = Integer.parseInt(args[++i]);
+                case "--optimizer" -> optimizer = args[++i];
+                case "--schedule" -> schedule = args[++i];
+                case "--seed" -> seed = Long.parseLong(args[++i]);
+                case "--checkpoints" -> checkpoints = Path.of(args[++i]);
+                case "--every" -> every = Integer.parseInt(args[++i]);
+                case "--resume" -> resume = true;
+                case "--test-images" -> testImages = args[++i];
+                case "--test-labels" -> testLabels = args[++i];
+                case "--validate" -> validate = Integer.parseInt(args[++i]);
+                default -> {
+                    usage();
+                    return;
+                }
+            }
+        }
+        if(output == null || (testImages == null) != (testLabels == null)){
+            usage();
+            return;
+        }
+
+        Dataset data = shards != null ? ShardedDataset.open(Path.of(shards)) : MnistDataset.open(imagesPath, labelsPath);
+        Dataset testData = testImages != null ? MnistDataset.open(testImages, testLabels) : null;
+        long start = System.nanoTime();
+        Network network;
+        try(Checkpointer checkpointer = new Checkpointer(checkpoints, every, 2);
+            Evaluator evaluator = new Evaluator(Runtime.getRuntime().availableProcessors(), 10)){
+            Validation validation = testData != null ? new Validation(evaluator, testData, validate, 0) : null;
+            if(resume){
+                network = NetworkTools.resumeTraining(checkpoints, data, checkpointer, validation);
+            }else{
+                network = init != null ? new Network(init) : new Network(Arrays.stream(layers.split("-")).mapToInt(Integer::parseInt).toArray());
+                if(optimizer != null || schedule != null){
+                    Optimizer chosen = optimizer != null ? Optimizer.parse(optimizer) : network.getOptimizer();
+                    long totalSteps = (long) epochs * ((data.size() + batchSize - 1) / batchSize);
+                    if(schedule != null) chosen.setSchedule(LearningRateSchedule.parse(schedule, totalSteps));
+                    network.setOptimizer(chosen);
+                }
+                NetworkTools.train(network, data, epochs, learningRate, batchSize, seed, checkpointer, validation);
+            }
+
+            network.saveBinary(output);
+            System.out.println("Trained in " + (System.nanoTime() - start) / 1_000_000 + "ms, wrote " + output);
+            if(testData != null) report(evaluator.evaluate(network.toModel(), testData));
+        }
+    }
+
+    private static void report(Evaluation result) {
+        System.out.println("Test " + result);
+        for(int digit = 0; digit < result.getClassCount(); digit++){
+            System.out.printf("%d: precision %.2f%%, recall %.2f%%%n", digit, 100 * result.getPrecision(digit), 100 * result.getRecall(digit));
+        }
+        for(Evaluation.Mistake mistake : result.getMostConfidentErrors()){
+            System.out.println("  " + mistake);
+        }
+    }
+
+    private static void usage() {
+        System.err.println("Usage: Trainer --output path [--images path --labels path | --shards directory] [--layers 784-100-100-10 | --init model] [--epochs n] [--rate r] [--batch n] [--optimizer spec] [--schedule spec] [--seed n] [--checkpoints dir] [--every steps] [--resume] [--test-images path --test-labels path [--validate n]]");
+        System.exit(1);
+    }
+}
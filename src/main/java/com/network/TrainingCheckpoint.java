@@ -0,0 +1,187 @@
+package com.network;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Where a training run stands: the next epoch and sample of the shuffled order, the number of
+ * optimizer steps taken, and the settings needed to continue it. The network itself is stored
+ * next to it as a binary model file. The sample order is not stored; it is restored by
+ * replaying the shuffles of the finished epochs from {@code seed}.
+ * <p>
+ * A checkpoint consists of {@code checkpoint-<steps>.bin}, the optimizer state
+ * {@code checkpoint-<steps>.bin.opt} unless plain SGD is used, and {@code checkpoint-<steps>.state}.
+ * The state file is renamed into place last, so a checkpoint counts only once it exists.
+ */
+public final class TrainingCheckpoint {
+    static final String PREFIX = "checkpoint-";
+    static final String STATE_SUFFIX = ".state";
+    static final String MODEL_SUFFIX = ".bin";
+    private static final String HEADER = "# Training checkpoint";
+
+    private final int epoch;
+    private final int sample;
+    private final long steps;
+    private final long seed;
+    private final int epochs;
+    private final int batchSize;
+    private final double learningRate;
+    private final int datasetSize;
+    private final Path model;
+
+    TrainingCheckpoint(int epoch, int sample, long steps, long seed, int epochs, int batchSize, double learningRate, int datasetSize, Path model) {
+        this.epoch = epoch;
+        this.sample = sample;
+        this.steps = steps;
+        this.seed = seed;
+        this.epochs = epochs;
+        this.batchSize = batchSize;
+        this.learningRate = learningRate;
+        this.datasetSize = datasetSize;
+        this.model = model;
+    }
+
+    /**
+     * The newest complete checkpoint in {@code directory}, or null if there is none.
+     */
+    public static TrainingCheckpoint latest(Path directory) throws IOException {
+        if(!Files.isDirectory(directory)) return null;
+
+        for(Path state : list(directory)){
+            TrainingCheckpoint checkpoint = read(state);
+            if(Files.isRegularFile(checkpoint.model)) return checkpoint;
+        }
+
+        return null;
+    }
+
+    /**
+     * Creates the network and its optimizer as they were when the checkpoint was taken.
+     */
+    public Network loadNetwork() throws IOException {
+        return new Network(model.toString());
+    }
+
+    /**
+     * The same run moved to another position.
+     */
+    TrainingCheckpoint at(int epoch, int sample, long steps, Path model) {
+        return new TrainingCheckpoint(epoch, sample, steps, seed, epochs, batchSize, learningRate, datasetSize, model);
+    }
+
+    public int getEpoch() {
+        return epoch;
+    }
+
+    public int getSample() {
+        return sample;
+    }
+
+    public long getSteps() {
+        return steps;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public int getEpochs() {
+        return epochs;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public double getLearningRate() {
+        return learningRate;
+    }
+
+    public int getDatasetSize() {
+        return datasetSize;
+    }
+
+    public Path getModel() {
+        return model;
+    }
+
+    // Newest first; step counts are zero-padded, so names sort by step.
+    static List<Path> list(Path directory) throws IOException {
+        try(Stream<Path> files = Files.list(directory)){
+            List<Path> states = new ArrayList<>(files.filter(file -> {
+                String name = file.getFileName().toString();
+                return name.startsWith(PREFIX) && name.endsWith(STATE_SUFFIX);
+            }).toList());
+            states.sort(Comparator.comparing((Path file) -> file.getFileName().toString()).reversed());
+            return states;
+        }
+    }
+
+    void write(Path path) throws IOException {
+        try(BufferedWriter writer = Files.newBufferedWriter(path)){
+            writer.write(HEADER);
+            writer.newLine();
+            writer.write("model " + model.getFileName() + System.lineSeparator());
+            writer.write("epoch " + epoch + System.lineSeparator());
+            writer.write("sample " + sample + System.lineSeparator());
+            writer.write("steps " + steps + System.lineSeparator());
+            writer.write("seed " + seed + System.lineSeparator());
+            writer.write("epochs " + epochs + System.lineSeparator());
+            writer.write("batchSize " + batchSize + System.lineSeparator());
+            writer.write("learningRate " + learningRate + System.lineSeparator());
+            writer.write("datasetSize " + datasetSize + System.lineSeparator());
+        }
+    }
+
+    static TrainingCheckpoint read(Path path) throws IOException {
+        Map<String, String> values = new HashMap<>();
+        try(BufferedReader reader = Files.newBufferedReader(path)){
+            String line = reader.readLine();
+            if(line == null || !line.equals(HEADER)) throw new IOException("Bad header. Expected: " + HEADER);
+
+            while((line = reader.readLine()) != null){
+                if(line.isBlank()) continue;
+
+                String[] parts = line.split(" ", 2);
+                if(parts.length != 2) throw new IOException("Bad line in " + path + ": " + line);
+                values.put(parts[0], parts[1]);
+            }
+        }
+
+        try{
+            return new TrainingCheckpoint(
+                    Integer.parseInt(value(values, "epoch", path)),
+                    Integer.parseInt(value(values, "sample", path)),
+                    Long.parseLong(value(values, "steps", path)),
+                    Long.parseLong(value(values, "seed", path)),
+                    Integer.parseInt(value(values, "epochs", path)),
+                    Integer.parseInt(value(values, "batchSize", path)),
+                    Double.parseDouble(value(values, "learningRate", path)),
+                    Integer.parseInt(value(values, "datasetSize", path)),
+                    path.resolveSibling(value(values, "model", path)));
+        }catch(NumberFormatException e){
+            throw new IOException("Bad value in " + path + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static String value(Map<String, String> values, String key, Path path) throws IOException {
+        String value = values.get(key);
+        if(value == null) throw new IOException("Missing " + key + " in " + path);
+
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return "epoch " + epoch + ", sample " + sample + ", step " + steps;
+    }
+}
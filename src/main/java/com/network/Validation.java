@@ -0,0 +1,25 @@
+package com.network;
+
+/**
+ * Scores the network on held-out data after every training epoch. With {@code samples} below
+ * the size of the data, the same random subsample is scored every time, so the numbers of
+ * different epochs stay comparable while each check costs only a fraction of a full pass.
+ */
+public final class Validation {
+    private final Evaluator evaluator;
+    private final Dataset data;
+    private final int[] indices;
+
+    /**
+     * @param samples how many samples to score, or 0 for all of them
+     */
+    public Validation(Evaluator evaluator, Dataset data, int samples, long seed) {
+        this.evaluator = evaluator;
+        this.data = data;
+        this.indices = samples > 0 && samples < data.size() ? Evaluator.subsample(data.size(), samples, seed) : null;
+    }
+
+    public Evaluation run(Network network) throws NetworkException {
+        return evaluator.evaluate(network.toModel(), data, indices);
+    }
+}
@@ -0,0 +1,52 @@
+package com.network;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link DenseKernels} on the JDK Vector API. Multiply and add are kept as separate lanewise
+ * operations instead of a fused multiply-add, so every lane rounds exactly like
+ * {@link ScalarKernels} and results do not depend on the host.
+ */
+final class VectorKernels extends DenseKernels {
+    private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+
+    @Override
+    void axpy(double a, double[] x, int xOffset, double[] y, int yOffset, int length) {
+        DoubleVector scale = DoubleVector.broadcast(DOUBLES, a);
+
+        int i = 0;
+        int bound = DOUBLES.loopBound(length);
+        for(; i < bound; i += DOUBLES.length()){
+            DoubleVector products = DoubleVector.fromArray(DOUBLES, x, xOffset + i).mul(scale);
+            DoubleVector.fromArray(DOUBLES, y, yOffset + i).add(products).intoArray(y, yOffset + i);
+        }
+
+        for(; i < length; i++){
+            y[yOffset + i] += a * x[xOffset + i];
+        }
+    }
+
+    @Override
+    void axpy(float a, float[] x, int xOffset, float[] y, int yOffset, int length) {
+        FloatVector scale = FloatVector.broadcast(FLOATS, a);
+
+        int i = 0;
+        int bound = FLOATS.loopBound(length);
+        for(; i < bound; i += FLOATS.length()){
+            FloatVector products = FloatVector.fromArray(FLOATS, x, xOffset + i).mul(scale);
+            FloatVector.fromArray(FLOATS, y, yOffset + i).add(products).intoArray(y, yOffset + i);
+        }
+
+        for(; i < length; i++){
+            y[yOffset + i] += a * x[xOffset + i];
+        }
+    }
+
+    @Override
+    String name() {
+        return "vector (" + DOUBLES.vectorBitSize() + "-bit)";
+    }
+}
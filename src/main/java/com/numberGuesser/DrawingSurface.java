@@ -0,0 +1,120 @@
+package com.numberGuesser;
+
+import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import javafx.scene.image.WritablePixelFormat;
+
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * Fixed-size drawing backed by one ARGB array. Strokes are rasterized straight into the array
+ * as capsules (a disc swept along the segment between two mouse positions), so the cost of a
+ * stroke only depends on its length and never on how much has been drawn before. Changed
+ * pixels are pushed to the displayed image in one dirty rectangle by {@link #flush()}.
+ * Must only be used on the FX thread.
+ */
+public class DrawingSurface {
+    public static final int INK = 0xFFFFFFFF;
+    public static final int BACKGROUND = 0xFF000000;
+    private static final WritablePixelFormat<IntBuffer> FORMAT = PixelFormat.getIntArgbInstance();
+
+    private final int width;
+    private final int height;
+    private final int[] pixels;
+    private final WritableImage image;
+    private final ImageView view;
+    private int dirtyMinX, dirtyMinY, dirtyMaxX, dirtyMaxY;
+
+    public DrawingSurface(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.pixels = new int[width * height];
+        this.image = new WritableImage(width, height);
+        this.view = new ImageView(image);
+        view.setMouseTransparent(true);
+
+        clear();
+        flush();
+    }
+
+    public ImageView getView() {
+        return view;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * The backing pixels in row-major ARGB order. Callers must not modify them.
+     */
+    public int[] getPixels() {
+        return pixels;
+    }
+
+    /**
+     * Paints every pixel whose center lies within {@code radius} of the segment from
+     * (x0, y0) to (x1, y1). A zero-length segment paints a disc.
+     */
+    public void stroke(double x0, double y0, double x1, double y1, double radius, int color) {
+        int minX = Math.max(0, (int) Math.floor(Math.min(x0, x1) - radius));
+        int maxX = Math.min(width - 1, (int) Math.ceil(Math.max(x0, x1) + radius));
+        int minY = Math.max(0, (int) Math.floor(Math.min(y0, y1) - radius));
+        int maxY = Math.min(height - 1, (int) Math.ceil(Math.max(y0, y1) + radius));
+        if(minX > maxX || minY > maxY) return;
+
+        double dx = x1 - x0;
+        double dy = y1 - y0;
+        double lengthSquared = dx * dx + dy * dy;
+        double radiusSquared = radius * radius;
+
+        for(int row = minY; row <= maxY; row++){
+            double py = row + 0.5;
+            int offset = row * width;
+
+            for(int col = minX; col <= maxX; col++){
+                double px = col + 0.5;
+
+                // Distance from the pixel center to the closest point of the segment.
+                double t = lengthSquared == 0 ? 0 : Math.max(0, Math.min(1, ((px - x0) * dx + (py - y0) * dy) / lengthSquared));
+                double ex = px - (x0 + t * dx);
+                double ey = py - (y0 + t * dy);
+                if(ex * ex + ey * ey <= radiusSquared) pixels[offset + col] = color;
+            }
+        }
+
+        markDirty(minX, minY, maxX, maxY);
+    }
+
+    public void clear() {
+        Arrays.fill(pixels, BACKGROUND);
+        markDirty(0, 0, width - 1, height - 1);
+    }
+
+    /**
+     * Copies the pixels changed since the last flush into the displayed image.
+     */
+    public void flush() {
+        if(dirtyMinX > dirtyMaxX) return;
+
+        int dirtyWidth = dirtyMaxX - dirtyMinX + 1;
+        int dirtyHeight = dirtyMaxY - dirtyMinY + 1;
+        image.getPixelWriter().setPixels(dirtyMinX, dirtyMinY, dirtyWidth, dirtyHeight, FORMAT, pixels, dirtyMinY * width + dirtyMinX, width);
+
+        dirtyMinX = dirtyMinY = Integer.MAX_VALUE;
+        dirtyMaxX = dirtyMaxY = Integer.MIN_VALUE;
+    }
+
+    private void markDirty(int minX, int minY, int maxX, int maxY) {
+        dirtyMinX = Math.min(dirtyMinX, minX);
+        dirtyMinY = Math.min(dirtyMinY, minY);
+        dirtyMaxX = Math.max(dirtyMaxX, maxX);
+        dirtyMaxY = Math.max(dirtyMaxY, maxY);
+    }
+}
@@ -1,5 +1,6 @@
 package com.numberGuesser;
 
+import com.network.ImageResampler;
 import javafx.embed.swing.SwingFXUtils;
 import javafx.scene.image.Image;
 import javafx.scene.image.PixelReader;
@@ -54,46 +55,6 @@ public class ImageTools {
     }
 
     public static double[][] rescale(double[][] origImage, int newHeight, int newWidth){
-        int origHeight = origImage.length;
-        int origWidth = origImage[0].length;
-        double[][] newImage = new double[newHeight][newWidth];
-
-        double heightScale = (double) origHeight / newHeight;
-        double widthScale = (double) origWidth / newWidth;
-        for(int row = 0; row < newHeight; row++){
-            double upperBorder = row * heightScale;
-            double lowerBorder = (row + 1) * heightScale;
-
-            for(int col = 0; col < newWidth; col++){
-                double leftBorder = col * widthScale;
-                double rightBorder = (col + 1) * widthScale;
-
-                int minRow = (int) upperBorder;
-                int maxRow = (int) lowerBorder;
-                int minCol = (int) leftBorder;
-                int maxCol = (int) rightBorder;
-
-                double sum = 0, area = 0;
-                for(int origRow = minRow; origRow <= maxRow; origRow++){
-                    if(origRow == origHeight) continue;
-
-                    double heightOverlap = Math.min(lowerBorder, origRow + 1) - Math.max(upperBorder, origRow);
-
-                    for(int origCol = minCol; origCol <= maxCol; origCol++){
-                        if(origCol == origWidth) continue;
-
-                        double widthOverlap = Math.min(rightBorder, origCol + 1) - Math.max(leftBorder, origCol);
-
-                        double overlap = heightOverlap * widthOverlap;
-                        sum += origImage[origRow][origCol] * overlap;
-                        area += overlap;
-                    }
-                }
-
-                newImage[row][col] = Math.min(255, sum / area);
-            }
-        }
-
-        return newImage;
+        return ImageResampler.rescale(origImage, newHeight, newWidth);
     }
 }
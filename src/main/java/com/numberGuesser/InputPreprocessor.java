@@ -0,0 +1,44 @@
+package com.numberGuesser;
+
+import com.network.ImageResampler;
+
+/**
+ * Turns a drawing into the flat network input without allocating. The ARGB pixels of the
+ * canvas buffer are binarized like the original per-pixel loop (opaque black is 0, anything
+ * else 255) into a reused array, which {@link ImageResampler} then area-averages down to the
+ * input size with its cached overlap tables. All buffers are owned by the instance, so one
+ * preprocessor must only be used by one thread at a time.
+ */
+public class InputPreprocessor {
+    public static final int INPUT_ROWS = 28;
+    public static final int INPUT_COLS = 28;
+    private static final int BLACK = 0xFF000000;
+
+    private final int width;
+    private final int height;
+    private final double[] pixels;
+    private final double[] input = new double[INPUT_ROWS * INPUT_COLS];
+
+    public InputPreprocessor(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.pixels = new double[width * height];
+    }
+
+    public boolean fits(int width, int height) {
+        return this.width == width && this.height == height;
+    }
+
+    /**
+     * Downsamples {@code argb}, a row-major image of this preprocessor's size, and returns the
+     * network input. The returned array is reused by the next call.
+     */
+    public double[] process(int[] argb) {
+        for(int i = 0; i < pixels.length; i++){
+            pixels[i] = argb[i] != BLACK ? 255 : 0;
+        }
+
+        ImageResampler.rescale(pixels, height, width, input, INPUT_ROWS, INPUT_COLS);
+        return input;
+    }
+}
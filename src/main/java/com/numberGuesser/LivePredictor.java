@@ -0,0 +1,110 @@
+package com.numberGuesser;
+
+import com.network.ModelRegistry;
+import com.network.NetworkException;
+import com.network.Prediction;
+import javafx.application.Platform;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Scores drawings on a background thread. The FX thread only copies the pixels of the latest
+ * drawing into a single pending slot; if the worker has not picked up the previous drawing
+ * yet it is overwritten, so stale requests are dropped instead of queued. Results are handed
+ * back to the FX thread with {@link Platform#runLater}, and a result older than one already
+ * shown is discarded. Each drawing is scored on whichever model version of the registry is
+ * active when the worker picks it up.
+ */
+public class LivePredictor implements AutoCloseable {
+    private final ModelRegistry registry;
+    private final Consumer<Prediction> listener;
+    private final ExecutorService executor;
+    private final AtomicReference<Frame> pending = new AtomicReference<>();
+    private final AtomicReference<Frame> spare = new AtomicReference<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private Frame back;
+    private long sequence;
+    private long shownSequence = -1;
+    private InputPreprocessor preprocessor;
+
+    /**
+     * @param listener receives every published prediction on the FX thread
+     */
+    public LivePredictor(ModelRegistry registry, Consumer<Prediction> listener) {
+        this.registry = registry;
+        this.listener = listener;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "live-prediction");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Queues a copy of {@code argb}, a row-major image, for scoring and replaces any drawing
+     * that is still waiting. Must be called on the FX thread.
+     */
+    public void submit(int[] argb, int width, int height) {
+        if(back == null || back.pixels.length != width * height){
+            Frame reused = spare.getAndSet(null);
+            back = reused != null && reused.pixels.length == width * height ? reused : new Frame(width * height);
+        }
+
+        System.arraycopy(argb, 0, back.pixels, 0, width * height);
+        back.width = width;
+        back.height = height;
+        back.sequence = sequence++;
+
+        // The frame that was still pending, if any, is stale and becomes the next back buffer.
+        back = pending.getAndSet(back);
+        if(scheduled.compareAndSet(false, true)) executor.execute(this::run);
+    }
+
+    private void run() {
+        scheduled.set(false);
+        Frame frame = pending.getAndSet(null);
+        if(frame == null) return;
+
+        try{
+            if(preprocessor == null || !preprocessor.fits(frame.width, frame.height)){
+                preprocessor = new InputPreprocessor(frame.width, frame.height);
+            }
+
+            Prediction prediction = registry.predict(preprocessor.process(frame.pixels));
+
+            long frameSequence = frame.sequence;
+            Platform.runLater(() -> publish(frameSequence, prediction));
+        }catch(NetworkException e){
+            e.printStackTrace();
+        }finally{
+            spare.set(frame);
+        }
+    }
+
+    private void publish(long frameSequence, Prediction prediction) {
+        if(frameSequence < shownSequence) return;
+
+        shownSequence = frameSequence;
+        listener.accept(prediction);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private static final class Frame {
+        private final int[] pixels;
+        private int width;
+        private int height;
+        private long sequence;
+
+        private Frame(int size) {
+            this.pixels = new int[size];
+        }
+    }
+}
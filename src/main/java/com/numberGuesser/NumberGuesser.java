@@ -1,21 +1,51 @@
 package com.numberGuesser;
 
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
 
 import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
 
+/**
+ * The drawing window. With {@code -Dnumberguesser.exitAfterStartup=true} the app prints how long
+ * after JVM start the window was shown and the model was loaded, then exits. The {@code cds}
+ * build profile uses this to record a class-data-sharing archive, and it measures startup with
+ * and without one.
+ */
 public class NumberGuesser extends Application {
+    private static final boolean EXIT_AFTER_STARTUP = Boolean.getBoolean("numberguesser.exitAfterStartup");
+    private NumberGuesserController controller;
+
     @Override
     public void start(Stage stage) throws IOException {
         FXMLLoader fxmlLoader = new FXMLLoader(NumberGuesser.class.getResource("NumberGuesser-view.fxml"));
-        Scene scene = new Scene(fxmlLoader.load(), 300, 200);
+        Scene scene = new Scene(fxmlLoader.load(), 460, 200);
+        controller = fxmlLoader.getController();
         stage.setTitle("Number Guesser");
         stage.setScene(scene);
         stage.setResizable(false);
         stage.show();
+
+        if(EXIT_AFTER_STARTUP){
+            long shown = millisSinceStart();
+            controller.setOnModelLoaded(() -> {
+                System.out.println("Window shown after " + shown + " ms, model loaded after " + millisSinceStart() + " ms");
+                Platform.exit();
+            });
+        }
+    }
+
+    private static long millisSinceStart() {
+        return ProcessHandle.current().info().startInstant().map(start -> Duration.between(start, Instant.now()).toMillis()).orElse(-1L);
+    }
+
+    @Override
+    public void stop() {
+        if(controller != null) controller.shutdown();
     }
 
     public static void main(String[] args) {
@@ -1,29 +1,37 @@
 package com.numberGuesser;
 
-import com.network.Network;
+import com.network.ModelRegistry;
+import com.network.ModelVersion;
 import com.network.NetworkException;
-import com.network.NetworkTools;
+import com.network.NetworkModel;
+import com.network.Prediction;
+import com.network.PredictionCache;
 import javafx.animation.Animation;
-import javafx.animation.KeyFrame;
-import javafx.animation.Timeline;
+import javafx.animation.PauseTransition;
+import javafx.application.Platform;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
-import javafx.scene.Node;
-import javafx.scene.SnapshotParameters;
 import javafx.scene.control.Button;
-import javafx.scene.image.Image;
-import javafx.scene.image.PixelReader;
+import javafx.scene.control.Label;
+import javafx.scene.control.ProgressBar;
 import javafx.scene.input.MouseEvent;
+import javafx.scene.layout.HBox;
 import javafx.scene.layout.Pane;
-import javafx.scene.paint.Color;
-import javafx.scene.shape.Circle;
+import javafx.scene.layout.VBox;
 import javafx.scene.shape.Rectangle;
 import javafx.util.Duration;
 
 import java.io.IOException;
-import java.util.List;
+import java.io.InputStream;
+import java.nio.file.Path;
 
 public class NumberGuesserController {
+    // The former brush was an anti-aliased circle of radius 7, whose edge pixels already counted as ink.
+    private static final double BRUSH_RADIUS = 7.5;
+    private static final int RESIDENT_MODELS = 3;
+    private static final int CACHED_PREDICTIONS = 64;
+    private static final String BUNDLED_MODEL = "/com/networks/network.bin";
+    private static final Path MODELS_DIRECTORY = Path.of(System.getProperty("numberguesser.models", "models"));
     @FXML
     private Pane canvas;
     @FXML
@@ -34,19 +42,23 @@ public class NumberGuesserController {
     private Button saveButton;
     @FXML
     private Button clearButton;
-    private double mouseX, mouseY, mouseSceneX, mouseSceneY;
-    private Timeline drawingCircle;
-    private Timeline erasingCircle;
+    @FXML
+    private VBox probabilityBox;
+    @FXML
+    private Label modelLabel;
+    private double mouseX, mouseY;
     private boolean isPencil, isEraser;
-    private Network network;
+    private ModelRegistry registry;
+    private DrawingSurface surface;
+    private LivePredictor livePredictor;
+    private PauseTransition predictionThrottle;
+    private Label[] probabilityLabels;
+    private ProgressBar[] probabilityBars;
+    private boolean drawnBeforeReady;
+    private boolean closed;
+    private Runnable onModelLoaded;
     @FXML
-    public void initialize() throws IOException {
-        drawingCircle = new Timeline(new KeyFrame(Duration.millis(5), e -> drawCircle()));
-        drawingCircle.setCycleCount(Animation.INDEFINITE);
-
-        erasingCircle = new Timeline(new KeyFrame(Duration.millis(5), e -> eraseCircle()));
-        erasingCircle.setCycleCount(Animation.INDEFINITE);
-
+    public void initialize() {
         isPencil = true;
         isEraser = false;
 
@@ -55,106 +67,181 @@ public class NumberGuesserController {
         clip.heightProperty().bind(canvas.heightProperty());
         canvas.setClip(clip);
 
-        network = new Network("src\\main\\resources\\com\\networks\\network.txt");
+        surface = new DrawingSurface((int) canvas.getPrefWidth(), (int) canvas.getPrefHeight());
+        canvas.getChildren().add(surface.getView());
+
+        // The window shows right away; drawing works while the model loads, guessing once it is there.
+        saveButton.setDisable(true);
+        modelLabel.setText("Loading model");
+        Thread loader = new Thread(this::loadModel, "model-loader");
+        loader.setDaemon(true);
+        loader.start();
+
+        // Changes while drawing start the timer only if it is idle, so a prediction is made at
+        // most every 50 ms and always includes the latest stroke.
+        predictionThrottle = new PauseTransition(Duration.millis(50));
+        predictionThrottle.setOnFinished(e -> requestPrediction());
     }
 
-    public void pencilButtonClicked(ActionEvent actionEvent) {
-        isEraser = false;
-        isPencil = true;
+    // Runs on the loader thread and hands the registry to the FX thread when it is ready.
+    private void loadModel() {
+        ModelRegistry loaded = null;
+        try{
+            // Model files dropped into the models directory replace the bundled network while the app runs,
+            // if that directory exists; it is not created.
+            // Guessing an unchanged drawing again is answered from the cache. The preprocessor
+            // produces 0 or 255 per pixel before area averaging, so 256 levels keep inputs apart.
+            loaded = new ModelRegistry(MODELS_DIRECTORY, RESIDENT_MODELS, new PredictionCache(CACHED_PREDICTIONS, 255, 256));
+            if(!loaded.hasModel()){
+                try(InputStream in = NumberGuesserController.class.getResourceAsStream(BUNDLED_MODEL)){
+                    if(in == null) throw new IOException("Bundled model " + BUNDLED_MODEL + " not found");
+                    loaded.register("network.bin", NetworkModel.load(in, BUNDLED_MODEL));
+                }
+            }
+
+            ModelRegistry ready = loaded;
+            ModelVersion version = loaded.getActive();
+            Platform.runLater(() -> modelLoaded(ready, version));
+        }catch(IOException | NetworkException e){
+            e.printStackTrace();
+            close(loaded);
+            Platform.runLater(() -> {
+                modelLabel.setText("No model");
+                if(onModelLoaded != null) onModelLoaded.run();
+            });
+        }
     }
 
-    public void eraserButtonClicked(ActionEvent actionEvent) {
-        isPencil = false;
-        isEraser = true;
+    private void modelLoaded(ModelRegistry loaded, ModelVersion version) {
+        if(closed){
+            close(loaded);
+            return;
+        }
+
+        registry = loaded;
+        createProbabilityRows(version.getModel().getOutputSize());
+        livePredictor = new LivePredictor(registry, this::showPrediction);
+        modelLabel.setText("Model v" + version.getNumber());
+        saveButton.setDisable(false);
+        if(drawnBeforeReady) requestPrediction();
+        if(onModelLoaded != null) onModelLoaded.run();
     }
 
-    public void mousePressed(MouseEvent mouseEvent) {
-        mouseX = mouseEvent.getX();
-        mouseY = mouseEvent.getY();
+    /**
+     * Runs {@code action} on the FX thread once loading the model has finished, successfully
+     * or not.
+     */
+    public void setOnModelLoaded(Runnable action) {
+        onModelLoaded = action;
+    }
 
-        mouseSceneX = mouseEvent.getSceneX();
-        mouseSceneY = mouseEvent.getSceneY();
+    private void createProbabilityRows(int outputs) {
+        probabilityLabels = new Label[outputs];
+        probabilityBars = new ProgressBar[outputs];
+        for(int digit = 0; digit < outputs; digit++){
+            probabilityLabels[digit] = new Label(String.format("%d %3.0f%%", digit, 0d));
+            probabilityLabels[digit].setPrefWidth(45);
+            probabilityBars[digit] = new ProgressBar(0);
+            probabilityBars[digit].setPrefWidth(100);
+            probabilityBars[digit].setPrefHeight(16);
+
+            HBox row = new HBox(5, probabilityLabels[digit], probabilityBars[digit]);
+            probabilityBox.getChildren().add(row);
+        }
+    }
 
-        if(isPencil) {
-            drawCircle();
+    private void showPrediction(Prediction prediction) {
+        modelLabel.setText("Model v" + prediction.getVersion().getNumber());
+        showProbabilities(prediction.getOutputs());
+    }
 
-            drawingCircle.play();
-        }else if(isEraser){
-            eraseCircle();
+    private void showProbabilities(double[] output) {
+        // Outputs of independent sigmoids do not sum to one, so they are shown as shares of the total.
+        double total = 0;
+        for(double value : output) total += value;
 
-            erasingCircle.play();
+        int guess = 0;
+        for(int digit = 0; digit < output.length; digit++){
+            double share = total > 0 ? output[digit] / total : 0;
+            probabilityLabels[digit].setText(String.format("%d %3.0f%%", digit, 100 * share));
+            probabilityBars[digit].setProgress(share);
+            if(output[digit] > output[guess]) guess = digit;
         }
-    }
 
-    public void mouseDragged(MouseEvent mouseEvent) {
-        mouseX = mouseEvent.getX();
-        mouseY = mouseEvent.getY();
+        for(int digit = 0; digit < output.length; digit++){
+            probabilityLabels[digit].setStyle(digit == guess ? "-fx-font-weight: bold" : "");
+        }
+    }
 
-        mouseSceneX = mouseEvent.getSceneX();
-        mouseSceneY = mouseEvent.getSceneY();
+    private void canvasChanged() {
+        surface.flush();
+        if(predictionThrottle.getStatus() != Animation.Status.RUNNING) predictionThrottle.playFromStart();
     }
 
-    public void drawCircle(){
-        Circle circle = new Circle(7, Color.WHITE);
-        circle.setCenterX(mouseX);
-        circle.setCenterY(mouseY);
-        circle.setMouseTransparent(true);
-        canvas.getChildren().add(circle);
+    private void requestPrediction() {
+        if(livePredictor == null){
+            drawnBeforeReady = true;
+            return;
+        }
+
+        livePredictor.submit(surface.getPixels(), surface.getWidth(), surface.getHeight());
     }
-    private void eraseCircle() {
-        List<Node> hits = canvas.getChildren().stream()
-                .filter(n -> n instanceof Circle && n.contains(n.sceneToLocal(mouseSceneX, mouseSceneY)))
-                .toList();
 
-        canvas.getChildren().removeAll(hits);
+    public void shutdown() {
+        closed = true;
+        predictionThrottle.stop();
+        if(livePredictor != null) livePredictor.close();
+        close(registry);
     }
-    public void mouseExited(MouseEvent mouseEvent) {
-        if(isPencil) {
-            drawingCircle.stop();
-        }else if(isEraser){
-            erasingCircle.stop();
+
+    private static void close(ModelRegistry registry) {
+        if(registry == null) return;
+
+        try{
+            registry.close();
+        }catch(IOException e){
+            e.printStackTrace();
         }
     }
 
-    public void mouseReleased(MouseEvent mouseEvent) {
-        if(isPencil) {
-            drawingCircle.stop();
-        }else if(isEraser){
-            erasingCircle.stop();
-        }
+    public void pencilButtonClicked(ActionEvent actionEvent) {
+        isEraser = false;
+        isPencil = true;
     }
 
-    public void clearButtonClicked(ActionEvent actionEvent) {
-        canvas.getChildren().clear();
+    public void eraserButtonClicked(ActionEvent actionEvent) {
+        isPencil = false;
+        isEraser = true;
     }
 
-    public void guessButtonClicked(ActionEvent actionEvent) throws NetworkException {
-        SnapshotParameters params = new SnapshotParameters();
-        params.setFill(Color.TRANSPARENT);
-        Image snapshot = canvas.snapshot(params, null);
+    public void mousePressed(MouseEvent mouseEvent) {
+        mouseX = mouseEvent.getX();
+        mouseY = mouseEvent.getY();
 
-        int height = (int) snapshot.getHeight();
-        int width = (int) snapshot.getWidth();
-        double[][] res = new double[height][width];
+        strokeTo(mouseX, mouseY);
+    }
 
-        PixelReader reader = snapshot.getPixelReader();
-        for (int row = 0; row < height; row++) {
-            for (int col = 0; col < width; col++) {
-                Color color = reader.getColor(col, row);
+    public void mouseDragged(MouseEvent mouseEvent) {
+        strokeTo(mouseEvent.getX(), mouseEvent.getY());
 
-                res[row][col] = color.equals(Color.BLACK) ? 0 : 255;
-            }
-        }
+        mouseX = mouseEvent.getX();
+        mouseY = mouseEvent.getY();
+    }
 
-        double[][] rescaled = ImageTools.rescale(res, 28, 28);
-        double[] input = NetworkTools.transform2D(rescaled);
+    // Joins the previous and the current mouse position, so fast movements leave no gaps.
+    private void strokeTo(double x, double y) {
+        int color = isEraser ? DrawingSurface.BACKGROUND : DrawingSurface.INK;
+        surface.stroke(mouseX, mouseY, x, y, BRUSH_RADIUS, color);
+        canvasChanged();
+    }
 
-        double[] output = network.calculate(input);
-        int guess = 0;
-        for (int i = 0; i < output.length; i++) {
-            if (output[i] > output[guess]) guess = i;
-        }
+    public void clearButtonClicked(ActionEvent actionEvent) {
+        surface.clear();
+        canvasChanged();
+    }
 
-        System.out.println(guess);
+    public void guessButtonClicked(ActionEvent actionEvent) {
+        predictionThrottle.stop();
+        requestPrediction();
     }
-}
\ No newline at end of file
+}
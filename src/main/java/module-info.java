@@ -2,13 +2,19 @@ module com.example.paint {
     requires javafx.controls;
     requires javafx.fxml;
     requires javafx.web;
+    requires javafx.swing;
+    requires java.desktop;
+    requires java.management;
+    requires jdk.management;
+    requires java.net.http;
+    requires jdk.httpserver;
+    requires static jdk.incubator.vector;
 
     requires org.controlsfx.controls;
     requires com.dlsc.formsfx;
     requires net.synedra.validatorfx;
     requires org.kordamp.ikonli.javafx;
     requires org.kordamp.bootstrapfx.core;
-    requires eu.hansolo.tilesfx;
     requires com.almasb.fxgl.all;
 
     exports com.numberGuesser;
@@ -0,0 +1,95 @@
+package com.network;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * A run that is interrupted after a checkpoint and resumed must end with exactly the weights of
+ * the same run done in one go, optimizer state included.
+ */
+class CheckpointResumeTest {
+    private static final int SAMPLES = 50;
+    private static final int EPOCHS = 3;
+    private static final int BATCH_SIZE = 4;
+    // 13 steps per epoch, so this stops in the middle of the second epoch.
+    private static final int CHECKPOINT_EVERY = 5;
+    private static final long STOP_AT = 15;
+    private static final long SEED = 42;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void resumedSgdRunMatchesUninterruptedRun() throws Exception {
+        assertResumeMatches(Optimizer.sgd(), Optimizer.sgd(), 0.5);
+    }
+
+    @Test
+    void resumedAdamRunMatchesUninterruptedRun() throws Exception {
+        int totalSteps = EPOCHS * ((SAMPLES + BATCH_SIZE - 1) / BATCH_SIZE);
+        assertResumeMatches(Optimizer.adam().setSchedule(LearningRateSchedule.parse("cosine", totalSteps)),
+                Optimizer.adam().setSchedule(LearningRateSchedule.parse("cosine", totalSteps)), 0.01);
+    }
+
+    private void assertResumeMatches(Optimizer straightOptimizer, Optimizer interruptedOptimizer, double learningRate) throws Exception {
+        Dataset data = syntheticData();
+        Network initial = new Network(16, 12, 10);
+
+        Network straight = initial.copy();
+        straight.setOptimizer(straightOptimizer);
+        NetworkTools.train(straight, data, EPOCHS, learningRate, BATCH_SIZE, SEED);
+
+        Network interrupted = initial.copy();
+        interrupted.setOptimizer(interruptedOptimizer);
+        StoppingCheckpointer checkpointer = new StoppingCheckpointer(directory, CHECKPOINT_EVERY);
+        assertThrows(Stop.class, () -> NetworkTools.train(interrupted, data, EPOCHS, learningRate, BATCH_SIZE, SEED, checkpointer));
+        checkpointer.close();
+        assertEquals(STOP_AT, TrainingCheckpoint.latest(directory).getSteps());
+
+        Network resumed = NetworkTools.resumeTraining(directory, data, null);
+        assertSameParameters(straight.snapshot(), resumed.snapshot());
+    }
+
+    private static void assertSameParameters(NetworkParameters expected, NetworkParameters actual) {
+        for(int layer = 1; layer < expected.layerSizes.length; layer++){
+            assertArrayEquals(expected.weights[layer], actual.weights[layer], "weights of layer " + layer);
+            assertArrayEquals(expected.biases[layer], actual.biases[layer], "biases of layer " + layer);
+        }
+    }
+
+    private static Dataset syntheticData() {
+        Random random = new Random(7);
+        double[][] inputs = new double[SAMPLES][16];
+        int[] labels = new int[SAMPLES];
+        for(int i = 0; i < SAMPLES; i++){
+            labels[i] = random.nextInt(10);
+            for(int j = 0; j < 16; j++) inputs[i][j] = random.nextInt(3) == 0 ? 0 : random.nextDouble();
+        }
+
+        return new ArrayDataset(inputs, labels);
+    }
+
+    // Stands in for a crash right after the checkpoint at STOP_AT was queued.
+    private static final class StoppingCheckpointer extends Checkpointer {
+        private StoppingCheckpointer(Path directory, int everySteps) throws IOException {
+            super(directory, everySteps, 2);
+        }
+
+        @Override
+        void save(Network network, TrainingCheckpoint state) {
+            super.save(network, state);
+            if(state.getSteps() == STOP_AT) throw new Stop();
+        }
+    }
+
+    private static final class Stop extends RuntimeException {
+    }
+}